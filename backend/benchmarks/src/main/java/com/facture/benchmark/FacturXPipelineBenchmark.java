@@ -0,0 +1,51 @@
+package com.facture.benchmark;
+
+import com.facture.entity.Invoice;
+import com.facture.service.PdfService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass Factur-X pipeline with the original save/reload one.
+ * Run with {@code -prof gc} to get the allocation rate per invoice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FacturXPipelineBenchmark {
+
+    @Param({"SINGLE_PASS", "RELOAD"})
+    PdfService.GenerationMode mode;
+
+    @Param({"20"})
+    int itemCount;
+
+    PdfService pdfService;
+    Invoice invoice;
+
+    @Setup
+    public void setup() {
+        pdfService = new PdfService();
+        invoice = InvoiceFixtures.invoice(1L, itemCount);
+    }
+
+    @Benchmark
+    public byte[] generateFacturXPdf() throws IOException {
+        return pdfService.generateFacturXPdf(invoice, mode);
+    }
+}
@@ -0,0 +1,79 @@
+package com.facture.benchmark;
+
+import com.facture.dto.InvoiceDto;
+import com.facture.entity.Invoice;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the invoice list endpoint once the entities are loaded: entity to DTO mapping, then JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceDtoBenchmark {
+
+    @Param({"1", "20", "200", "2000"})
+    int itemCount;
+
+    @Param({"50"})
+    int invoiceCount;
+
+    List<Invoice> invoices;
+    List<InvoiceDto> dtos;
+    ObjectWriter writer;
+
+    @Setup
+    public void setup() {
+        invoices = new ArrayList<>(invoiceCount);
+        for (int i = 1; i <= invoiceCount; i++) {
+            invoices.add(InvoiceFixtures.invoice(i, itemCount));
+        }
+        dtos = toDtos();
+
+        // Same settings as the Quarkus default ObjectMapper
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, InvoiceDto.class));
+    }
+
+    @Benchmark
+    public List<InvoiceDto> fromEntity() {
+        return toDtos();
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return writer.writeValueAsBytes(dtos);
+    }
+
+    private List<InvoiceDto> toDtos() {
+        List<InvoiceDto> result = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            result.add(InvoiceDto.fromEntity(invoice));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package com.facture.benchmark;
+
+import com.facture.entity.Client;
+import com.facture.entity.Invoice;
+import com.facture.entity.InvoiceItem;
+import com.facture.entity.InvoiceStatus;
+import com.facture.entity.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Detached entities shaped like production data, so benchmarks run without a database.
+ */
+public final class InvoiceFixtures {
+
+    private InvoiceFixtures() {
+    }
+
+    public static Invoice invoice(long id, int itemCount) {
+        User user = new User();
+        user.id = 1L;
+        user.email = "jeanne.martin@example.fr";
+        user.firstName = "Jeanne";
+        user.lastName = "Martin";
+        user.companyName = "Martin Conseil";
+        user.siret = "12345678900012";
+        user.phone = "0601020304";
+        user.addressStreet = "12 rue de la Paix";
+        user.addressPostalCode = "75002";
+        user.addressCity = "Paris";
+        user.addressCountry = "FR";
+        user.iban = "FR7630006000011234567890189";
+        user.bic = "AGRIFRPP";
+
+        Client client = new Client();
+        client.id = 1L;
+        client.user = user;
+        client.companyName = "Societe Generale des Tests";
+        client.contactName = "Paul Durand";
+        client.email = "compta@example.com";
+        client.siret = "98765432100021";
+        client.addressStreet = "4 avenue des Champs";
+        client.addressPostalCode = "69001";
+        client.addressCity = "Lyon";
+        client.addressCountry = "FR";
+
+        Invoice invoice = new Invoice();
+        invoice.id = id;
+        invoice.user = user;
+        invoice.client = client;
+        invoice.invoiceNumber = String.format("FACT-2026-01-%05d", id);
+        invoice.status = InvoiceStatus.SENT;
+        invoice.issueDate = LocalDate.of(2026, 1, 15);
+        invoice.dueDate = LocalDate.of(2026, 2, 14);
+        invoice.notes = "Paiement par virement a 30 jours";
+        invoice.paymentTerms = "30 jours fin de mois";
+        invoice.createdAt = LocalDateTime.of(2026, 1, 15, 9, 0);
+        invoice.updatedAt = invoice.createdAt;
+
+        for (int i = 0; i < itemCount; i++) {
+            InvoiceItem item = new InvoiceItem();
+            item.id = id * 10_000 + i;
+            item.description = "Prestation de conseil - journee " + (i + 1);
+            item.quantity = new BigDecimal("1.50");
+            item.unitPrice = new BigDecimal("450.00");
+            item.taxRate = new BigDecimal("20.00");
+            item.calculateAmount();
+            invoice.addItem(item);
+        }
+        invoice.calculateTotals();
+        return invoice;
+    }
+}
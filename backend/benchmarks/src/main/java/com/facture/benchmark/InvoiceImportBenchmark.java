@@ -0,0 +1,90 @@
+package com.facture.benchmark;
+
+import com.facture.service.InvoiceImportReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read side of the bulk import in rows per second (one operation = one invoice), for both input formats.
+ * The insert side needs a PostgreSQL database; its throughput is logged by InvoiceImportService after each import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceImportBenchmark {
+
+    private static final int ROW_COUNT = 10_000;
+
+    @Param({"1", "5"})
+    int itemCount;
+
+    ObjectMapper objectMapper;
+    String csv;
+    String jsonLines;
+
+    @Setup
+    public void setup() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+        StringBuilder csvBuilder = new StringBuilder("reference;client_siret;issue_date;due_date;status;notes;"
+                + "description;quantity;unit_price;item_tax_rate\n");
+        StringBuilder jsonBuilder = new StringBuilder();
+        for (int row = 1; row <= ROW_COUNT; row++) {
+            jsonBuilder.append("{\"clientSiret\":\"12345678900011\",\"issueDate\":\"2024-03-01\",\"dueDate\":\"2024-03-31\",")
+                    .append("\"status\":\"SENT\",\"notes\":\"Imported \\\"legacy\\\" invoice ").append(row).append("\",\"items\":[");
+            for (int item = 1; item <= itemCount; item++) {
+                csvBuilder.append("INV-").append(row).append(";12345678900011;2024-03-01;2024-03-31;SENT;")
+                        .append("\"Imported \"\"legacy\"\" invoice ").append(row).append("\";")
+                        .append("Consulting day ").append(item).append(";1,5;450,00;20\n");
+                jsonBuilder.append(item > 1 ? "," : "")
+                        .append("{\"description\":\"Consulting day ").append(item)
+                        .append("\",\"quantity\":1.5,\"unitPrice\":450.00,\"taxRate\":20}");
+            }
+            jsonBuilder.append("]}\n");
+        }
+        csv = csvBuilder.toString();
+        jsonLines = jsonBuilder.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public void readCsv(Blackhole blackhole) throws Exception {
+        read(InvoiceImportReader.Format.CSV, csv, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public void readJsonLines(Blackhole blackhole) throws Exception {
+        read(InvoiceImportReader.Format.JSON_LINES, jsonLines, blackhole);
+    }
+
+    private void read(InvoiceImportReader.Format format, String input, Blackhole blackhole) throws Exception {
+        InvoiceImportReader reader = new InvoiceImportReader(format, new StringReader(input), objectMapper);
+        InvoiceImportReader.ImportRow row;
+        while ((row = reader.next()) != null) {
+            if (row.error() != null) {
+                throw new IllegalStateException(row.error());
+            }
+            blackhole.consume(row);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.facture.service;
+
+import com.facture.benchmark.InvoiceFixtures;
+import com.facture.entity.Invoice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each stage of the Factur-X pipeline on its own, then end to end. Lives in the service package
+ * so the package-private stages can be called directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfServiceBenchmark {
+
+    @Param({"1", "20", "200", "2000"})
+    int itemCount;
+
+    PdfService pdfService;
+    Invoice invoice;
+
+    @Setup
+    public void setup() {
+        pdfService = new PdfService();
+        pdfService.generationMode = PdfService.GenerationMode.SINGLE_PASS;
+        invoice = InvoiceFixtures.invoice(1L, itemCount);
+    }
+
+    @Benchmark
+    public byte[] createVisualPdf() throws IOException {
+        return pdfService.createVisualPdf(invoice);
+    }
+
+    @Benchmark
+    public org.mustangproject.Invoice createMustangInvoice() {
+        return pdfService.createMustangInvoice(invoice);
+    }
+
+    @Benchmark
+    public byte[] generateFacturXPdf() throws IOException {
+        return pdfService.generateFacturXPdf(invoice);
+    }
+}
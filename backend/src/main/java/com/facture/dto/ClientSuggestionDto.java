@@ -0,0 +1,20 @@
+package com.facture.dto;
+
+import com.facture.entity.Client;
+
+public class ClientSuggestionDto {
+
+    public Long id;
+    public String companyName;
+    public String contactName;
+    public String email;
+
+    public static ClientSuggestionDto fromEntity(Client client) {
+        ClientSuggestionDto dto = new ClientSuggestionDto();
+        dto.id = client.id;
+        dto.companyName = client.companyName;
+        dto.contactName = client.contactName;
+        dto.email = client.email;
+        return dto;
+    }
+}
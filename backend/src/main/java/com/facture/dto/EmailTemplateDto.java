@@ -0,0 +1,35 @@
+package com.facture.dto;
+
+import com.facture.entity.EmailTemplate;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class EmailTemplateDto {
+
+    public EmailTemplate.Kind kind;
+
+    // Qute templates, e.g. "Relance - Facture {invoiceNumber}"
+    @NotBlank(message = "Subject is required")
+    @Size(max = 500, message = "Subject must be at most 500 characters")
+    public String subject;
+
+    @NotBlank(message = "Body is required")
+    @Size(max = 100000, message = "Body must be at most 100000 characters")
+    public String body;
+
+    public List<String> variables;
+    public LocalDateTime updatedAt;
+
+    public static EmailTemplateDto fromEntity(EmailTemplate template) {
+        EmailTemplateDto dto = new EmailTemplateDto();
+        dto.kind = template.kind;
+        dto.subject = template.subject;
+        dto.body = template.body;
+        dto.variables = template.kind.variables();
+        dto.updatedAt = template.updatedAt;
+        return dto;
+    }
+}
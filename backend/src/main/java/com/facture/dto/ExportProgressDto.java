@@ -0,0 +1,10 @@
+package com.facture.dto;
+
+public class ExportProgressDto {
+
+    public String exportId;
+    public int total;
+    public int completed;
+    public int failed;
+    public boolean finished;
+}
@@ -0,0 +1,24 @@
+package com.facture.dto;
+
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDate;
+
+/**
+ * One invoice of a bulk import. The client is given by id, SIRET or email, looked up in that order.
+ */
+public class ImportInvoiceRequest extends CreateInvoiceRequest {
+
+    // Number given by the previous tool, kept as is; it ends up in file names, so no separators or leading dot
+    @Size(max = 255, message = "Invoice number must be at most 255 characters")
+    @Pattern(regexp = "[A-Za-z0-9_-][A-Za-z0-9._-]*",
+            message = "Invoice number may only contain letters, digits, '.', '_' and '-', and must not start with '.'")
+    public String invoiceNumber;
+
+    public String clientSiret;
+
+    public String clientEmail;
+
+    public LocalDate paidDate;
+}
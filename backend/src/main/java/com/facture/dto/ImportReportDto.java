@@ -0,0 +1,25 @@
+package com.facture.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportReportDto {
+
+    public int total;
+    public int imported;
+    public int failed;
+    public long durationMs;
+    public List<RowError> errors = new ArrayList<>();
+
+    public static class RowError {
+
+        // Line of the input on which the invoice starts
+        public long line;
+        public String message;
+
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+}
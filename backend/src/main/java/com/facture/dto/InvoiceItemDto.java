@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 public class InvoiceItemDto {
 
@@ -35,6 +36,26 @@ public class InvoiceItemDto {
         return dto;
     }
 
+    /**
+     * Copies the editable fields onto an existing row, leaving unchanged values untouched so that
+     * dirty checking skips rows the edit did not affect.
+     */
+    public void applyTo(InvoiceItem item) {
+        BigDecimal requestedTaxRate = this.taxRate != null ? this.taxRate : new BigDecimal("20.00");
+        if (!Objects.equals(item.description, this.description)) {
+            item.description = this.description;
+        }
+        if (item.quantity == null || item.quantity.compareTo(this.quantity) != 0) {
+            item.quantity = this.quantity;
+        }
+        if (item.unitPrice == null || item.unitPrice.compareTo(this.unitPrice) != 0) {
+            item.unitPrice = this.unitPrice;
+        }
+        if (item.taxRate == null || item.taxRate.compareTo(requestedTaxRate) != 0) {
+            item.taxRate = requestedTaxRate;
+        }
+    }
+
     public InvoiceItem toEntity() {
         InvoiceItem item = new InvoiceItem();
         item.description = this.description;
@@ -0,0 +1,10 @@
+package com.facture.dto;
+
+import java.util.List;
+
+public class InvoicePageDto<T> {
+
+    public List<T> invoices;
+    // Null on the last page
+    public String nextCursor;
+}
@@ -0,0 +1,37 @@
+package com.facture.dto;
+
+import com.facture.entity.InvoiceStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * List-view row of an invoice, filled straight from a JPQL constructor expression: no entity, client or items loaded.
+ */
+public class InvoiceSummaryDto {
+
+    public Long id;
+    public String invoiceNumber;
+    public Long clientId;
+    public String clientName;
+    public InvoiceStatus status;
+    public LocalDate issueDate;
+    public LocalDate dueDate;
+    public LocalDate paidDate;
+    public BigDecimal total;
+    public String currency;
+
+    public InvoiceSummaryDto(Long id, String invoiceNumber, Long clientId, String clientName, InvoiceStatus status,
+                             LocalDate issueDate, LocalDate dueDate, LocalDate paidDate, BigDecimal total, String currency) {
+        this.id = id;
+        this.invoiceNumber = invoiceNumber;
+        this.clientId = clientId;
+        this.clientName = clientName;
+        this.status = status;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+        this.paidDate = paidDate;
+        this.total = total;
+        this.currency = currency;
+    }
+}
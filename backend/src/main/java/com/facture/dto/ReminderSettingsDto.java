@@ -0,0 +1,16 @@
+package com.facture.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class ReminderSettingsDto {
+
+    public boolean enabled = true;
+
+    // Days after the due date, one reminder each
+    @NotEmpty(message = "At least one reminder offset is required")
+    @Size(max = 10, message = "At most 10 reminder offsets are allowed")
+    public List<Integer> offsets;
+}
@@ -0,0 +1,17 @@
+package com.facture.dto;
+
+import java.util.List;
+
+public class SyncDto {
+
+    public List<InvoiceDto> invoices;
+    public List<ClientDto> clients;
+    public List<Long> deletedInvoiceIds;
+    public List<Long> deletedClientIds;
+    // Token to send as since on the next call
+    public String token;
+    // True when more changes are waiting, call again right away with the new token
+    public boolean hasMore;
+    // True when the response is a full snapshot and the local copy must be replaced rather than patched
+    public boolean reset;
+}
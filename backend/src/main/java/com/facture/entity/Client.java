@@ -1,5 +1,6 @@
 package com.facture.entity;
 
+import com.facture.util.SearchText;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
@@ -12,6 +13,8 @@ import java.util.List;
 @Table(name = "clients")
 public class Client extends PanacheEntityBase {
 
+    private static final int MAX_SEARCH_TOKENS = 5;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     public Long id;
@@ -55,12 +58,20 @@ public class Client extends PanacheEntityBase {
     @Column(length = 1000)
     public String notes;
 
+    // Accent-folded company name, contact name and email, trigram-indexed on PostgreSQL
+    @Column(name = "search_text", length = 1000)
+    public String searchText;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     public LocalDateTime createdAt;
 
     @Column(name = "updated_at")
     public LocalDateTime updatedAt;
 
+    // Tenant version of the last write, see SyncService
+    @Column(name = "change_seq", nullable = false)
+    public long changeSeq;
+
     @OneToMany(mappedBy = "client", cascade = CascadeType.ALL, orphanRemoval = true)
     public List<Invoice> invoices = new ArrayList<>();
 
@@ -68,19 +79,69 @@ public class Client extends PanacheEntityBase {
     public void prePersist() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        searchText = SearchText.of(companyName, contactName, email);
     }
 
     @PreUpdate
     public void preUpdate() {
         updatedAt = LocalDateTime.now();
+        searchText = SearchText.of(companyName, contactName, email);
     }
 
     public static List<Client> findByUserId(Long userId) {
         return list("user.id", userId);
     }
 
-    public static List<Client> findByUserIdWithSearch(Long userId, String search) {
-        return list("user.id = ?1 and (lower(companyName) like ?2 or lower(contactName) like ?2 or lower(email) like ?2)",
-                    userId, "%" + search.toLowerCase() + "%");
+    /**
+     * Clients whose name, contact or email contain every word of the search, accents and case ignored.
+     * Company names starting with the first word come first. On PostgreSQL the contains-match is served by
+     * the trigram index on search_text; H2 evaluates the same query with a scan.
+     */
+    public static List<Client> findByUserIdWithSearch(Long userId, String search, int limit) {
+        List<String> tokens = SearchText.tokens(search);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        if (tokens.size() > MAX_SEARCH_TOKENS) {
+            tokens = tokens.subList(0, MAX_SEARCH_TOKENS);
+        }
+
+        StringBuilder query = new StringBuilder("from Client c where c.user.id = :userId");
+        for (int i = 0; i < tokens.size(); i++) {
+            query.append(" and c.searchText like :token").append(i).append(" escape '\\'");
+        }
+        query.append(" order by case when c.searchText like :prefix escape '\\' then 0 else 1 end, c.companyName, c.id");
+
+        var typedQuery = getEntityManager().createQuery(query.toString(), Client.class)
+                .setParameter("userId", userId)
+                .setParameter("prefix", escapeLike(tokens.get(0)) + "%")
+                .setMaxResults(limit);
+        for (int i = 0; i < tokens.size(); i++) {
+            typedQuery.setParameter("token" + i, "%" + escapeLike(tokens.get(i)) + "%");
+        }
+        return typedQuery.getResultList();
+    }
+
+    public static List<Client> findChangedBetween(Long userId, long after, long upTo) {
+        return list("user.id = ?1 and changeSeq > ?2 and changeSeq <= ?3 order by changeSeq, id", userId, after, upTo);
+    }
+
+    // Change sequence of the (offset + 1)th client written after version after, null if there are fewer
+    public static Long findChangeSeqAt(Long userId, long after, long upTo, int offset) {
+        return getEntityManager()
+                .createQuery("select c.changeSeq from Client c where c.user.id = :userId"
+                        + " and c.changeSeq > :after and c.changeSeq <= :upTo order by c.changeSeq", Long.class)
+                .setParameter("userId", userId)
+                .setParameter("after", after)
+                .setParameter("upTo", upTo)
+                .setFirstResult(offset)
+                .setMaxResults(1)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 }
@@ -0,0 +1,59 @@
+package com.facture.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A user's own version of one of the emails sent on their behalf, as Qute templates for the subject and the
+ * HTML body. Users without a row get the built-in templates.
+ */
+@Entity
+@Table(name = "email_templates", uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "kind"}))
+public class EmailTemplate extends PanacheEntityBase {
+
+    public enum Kind {
+        INVOICE("clientName", "invoiceNumber"),
+        REMINDER("clientName", "invoiceNumber", "daysOverdue");
+
+        // Data available to the templates
+        private final List<String> variables;
+
+        Kind(String... variables) {
+            this.variables = List.of(variables);
+        }
+
+        public List<String> variables() {
+            return variables;
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(name = "user_id", nullable = false)
+    public Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public Kind kind;
+
+    @Column(nullable = false, length = 500)
+    public String subject;
+
+    @Column(nullable = false, length = 100000)
+    public String body;
+
+    @Column(name = "updated_at", nullable = false)
+    public LocalDateTime updatedAt;
+
+    public static EmailTemplate findByUserIdAndKind(Long userId, Kind kind) {
+        return find("userId = ?1 and kind = ?2", userId, kind).firstResult();
+    }
+
+    public static long deleteByUserIdAndKind(Long userId, Kind kind) {
+        return delete("userId = ?1 and kind = ?2", userId, kind);
+    }
+}
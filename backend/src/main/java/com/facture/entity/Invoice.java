@@ -1,5 +1,6 @@
 package com.facture.entity;
 
+import com.facture.dto.InvoiceSummaryDto;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
@@ -7,10 +8,12 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Entity
-@Table(name = "invoices")
+@Table(name = "invoices",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "invoice_number"}))
 public class Invoice extends PanacheEntityBase {
 
     @Id
@@ -25,7 +28,7 @@ public class Invoice extends PanacheEntityBase {
     @JoinColumn(name = "client_id", nullable = false)
     public Client client;
 
-    @Column(name = "invoice_number", unique = true, nullable = false)
+    @Column(name = "invoice_number", nullable = false)
     public String invoiceNumber;
 
     @NotNull
@@ -75,6 +78,10 @@ public class Invoice extends PanacheEntityBase {
     @Column(name = "updated_at")
     public LocalDateTime updatedAt;
 
+    // Tenant version of the last write, see SyncService
+    @Column(name = "change_seq", nullable = false)
+    public long changeSeq;
+
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("orderIndex ASC")
     public List<InvoiceItem> items = new ArrayList<>();
@@ -86,9 +93,6 @@ public class Invoice extends PanacheEntityBase {
     public void prePersist() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
-        if (invoiceNumber == null) {
-            generateInvoiceNumber();
-        }
     }
 
     @PreUpdate
@@ -98,14 +102,6 @@ public class Invoice extends PanacheEntityBase {
         updateStatus();
     }
 
-    public void generateInvoiceNumber() {
-        // Format: FACT-YYYY-MM-XXXXX
-        int year = LocalDate.now().getYear();
-        int month = LocalDate.now().getMonthValue();
-        long count = Invoice.count("invoiceNumber like ?1", String.format("FACT-%d-%02d%%", year, month));
-        this.invoiceNumber = String.format("FACT-%d-%02d-%05d", year, month, count + 1);
-    }
-
     public void calculateTotals() {
         subtotal = items.stream()
                 .map(item -> item.amount)
@@ -127,16 +123,174 @@ public class Invoice extends PanacheEntityBase {
         item.orderIndex = items.size() - 1;
     }
 
-    public static List<Invoice> findByUserId(Long userId) {
-        return list("user.id", userId);
+    /**
+     * Page of the user's invoices, newest first, after the given (issueDate, id) position.
+     * Two queries whatever the page size: one for the page ids, one fetching the invoices with client and items.
+     */
+    public static List<Invoice> findPageByUserId(Long userId, InvoiceStatus status,
+                                                 LocalDate afterIssueDate, Long afterId, int limit) {
+        List<Long> ids = keysetPage("select i.id", Long.class, userId, status, afterIssueDate, afterId, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Paging and collection fetching in one query would make Hibernate paginate in memory
+        return find("from Invoice i join fetch i.client left join fetch i.items where i.id in ?1"
+                + " order by i.issueDate desc, i.id desc", ids).list();
+    }
+
+    // Same page as findPageByUserId, read as list-view rows in a single query
+    public static List<InvoiceSummaryDto> findSummaryPageByUserId(Long userId, InvoiceStatus status,
+                                                                  LocalDate afterIssueDate, Long afterId, int limit) {
+        return keysetPage("select new com.facture.dto.InvoiceSummaryDto(i.id, i.invoiceNumber, i.client.id,"
+                        + " i.client.companyName, i.status, i.issueDate, i.dueDate, i.paidDate, i.total, i.currency)",
+                InvoiceSummaryDto.class, userId, status, afterIssueDate, afterId, limit);
+    }
+
+    private static <T> List<T> keysetPage(String select, Class<T> resultType, Long userId, InvoiceStatus status,
+                                          LocalDate afterIssueDate, Long afterId, int limit) {
+        StringBuilder query = new StringBuilder(select).append(" from Invoice i where i.user.id = :userId");
+        if (status != null) {
+            query.append(" and i.status = :status");
+        }
+        if (afterIssueDate != null) {
+            query.append(" and (i.issueDate < :afterIssueDate or (i.issueDate = :afterIssueDate and i.id < :afterId))");
+        }
+        query.append(" order by i.issueDate desc, i.id desc");
+
+        var typedQuery = getEntityManager().createQuery(query.toString(), resultType)
+                .setParameter("userId", userId)
+                .setMaxResults(limit);
+        if (status != null) {
+            typedQuery.setParameter("status", status);
+        }
+        if (afterIssueDate != null) {
+            typedQuery.setParameter("afterIssueDate", afterIssueDate);
+            typedQuery.setParameter("afterId", afterId);
+        }
+        return typedQuery.getResultList();
+    }
+
+    // Highest XXXXX among the user's numbers starting with the given FACT-YYYY-MM- prefix, 0 if there are none
+    public static long findHighestSequenceNumber(Long userId, String prefix) {
+        Long highest = getEntityManager()
+                .createQuery("select max(cast(substring(i.invoiceNumber, :start) as Long)) from Invoice i"
+                        + " where i.user.id = :userId and i.invoiceNumber like :prefix", Long.class)
+                .setParameter("start", prefix.length() + 1)
+                .setParameter("userId", userId)
+                .setParameter("prefix", prefix + "%")
+                .getSingleResult();
+        return highest != null ? highest : 0;
+    }
+
+    public static List<String> findExistingNumbers(Long userId, Collection<String> numbers) {
+        return getEntityManager()
+                .createQuery("select i.invoiceNumber from Invoice i where i.user.id = :userId"
+                        + " and i.invoiceNumber in :numbers", String.class)
+                .setParameter("userId", userId)
+                .setParameter("numbers", numbers)
+                .getResultList();
+    }
+
+    public static List<Long> findIdsByUserIdAndPeriod(Long userId, LocalDate from, LocalDate to, InvoiceStatus status) {
+        StringBuilder query = new StringBuilder("select i.id from Invoice i where i.user.id = :userId");
+        if (from != null) {
+            query.append(" and i.issueDate >= :from");
+        }
+        if (to != null) {
+            query.append(" and i.issueDate <= :to");
+        }
+        if (status != null) {
+            query.append(" and i.status = :status");
+        }
+        query.append(" order by i.issueDate, i.id");
+
+        var typedQuery = getEntityManager().createQuery(query.toString(), Long.class)
+                .setParameter("userId", userId);
+        if (from != null) {
+            typedQuery.setParameter("from", from);
+        }
+        if (to != null) {
+            typedQuery.setParameter("to", to);
+        }
+        if (status != null) {
+            typedQuery.setParameter("status", status);
+        }
+        return typedQuery.getResultList();
+    }
+
+    /**
+     * Invoices written after version {@code after} up to {@code upTo}, with client and items, oldest change first.
+     */
+    public static List<Invoice> findChangedBetween(Long userId, long after, long upTo) {
+        return find("from Invoice i join fetch i.client left join fetch i.items"
+                + " where i.user.id = ?1 and i.changeSeq > ?2 and i.changeSeq <= ?3 order by i.changeSeq, i.id",
+                userId, after, upTo).list();
+    }
+
+    // Change sequence of the (offset + 1)th invoice written after version after, null if there are fewer
+    public static Long findChangeSeqAt(Long userId, long after, long upTo, int offset) {
+        return getEntityManager()
+                .createQuery("select i.changeSeq from Invoice i where i.user.id = :userId"
+                        + " and i.changeSeq > :after and i.changeSeq <= :upTo order by i.changeSeq", Long.class)
+                .setParameter("userId", userId)
+                .setParameter("after", after)
+                .setParameter("upTo", upTo)
+                .setFirstResult(offset)
+                .setMaxResults(1)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    // Loads everything the PDF and Factur-X XML need in a single query
+    public static Invoice findByIdWithDocumentData(Long id) {
+        return find("from Invoice i join fetch i.user join fetch i.client left join fetch i.items where i.id = ?1", id)
+                .firstResult();
+    }
+
+    /**
+     * Ids and owners of unpaid SENT invoices due before the given date, read without locks
+     * (markOverdue checks the condition again). Served by the partial due_date index on SENT invoices.
+     */
+    public static List<Object[]> findOverdueCandidates(LocalDate today, int limit) {
+        return getEntityManager()
+                .createQuery("select i.id, i.user.id from Invoice i where i.status = :status"
+                        + " and i.dueDate < :today and i.paidDate is null order by i.dueDate, i.id", Object[].class)
+                .setParameter("status", InvoiceStatus.SENT)
+                .setParameter("today", today)
+                .setMaxResults(limit)
+                .getResultList();
     }
 
-    public static List<Invoice> findByUserIdAndStatus(Long userId, InvoiceStatus status) {
-        return list("user.id = ?1 and status = ?2", userId, status);
+    /**
+     * Keyset page of OVERDUE invoices after the given id, as [id, userId, dueDate, invoiceNumber, client email,
+     * client company name] rows so that a reminder run never holds more than one page of entities.
+     */
+    public static List<Object[]> findOverduePageForReminders(long afterId, int limit) {
+        return getEntityManager()
+                .createQuery("select i.id, i.user.id, i.dueDate, i.invoiceNumber, c.email, c.companyName"
+                        + " from Invoice i join i.client c where i.status = :status and i.id > :afterId"
+                        + " order by i.id", Object[].class)
+                .setParameter("status", InvoiceStatus.OVERDUE)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
     }
 
-    public static List<Invoice> findOverdueInvoices() {
-        return list("status = ?1 and dueDate < ?2", InvoiceStatus.SENT, LocalDate.now());
+    /**
+     * Moves the given invoices to OVERDUE in one statement, stamping each with its owner's current tenant version.
+     * Invoices paid or changed since they were selected are left alone.
+     */
+    public static int markOverdue(List<Long> ids, LocalDate today) {
+        return getEntityManager()
+                .createNativeQuery("update invoices i set status = 'OVERDUE', updated_at = :now, change_seq = v.version"
+                        + " from tenant_versions v where v.user_id = i.user_id and i.id in (:ids)"
+                        + " and i.status = 'SENT' and i.due_date < :today and i.paid_date is null")
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("ids", ids)
+                .setParameter("today", today)
+                .executeUpdate();
     }
 
     public boolean isOverdue() {
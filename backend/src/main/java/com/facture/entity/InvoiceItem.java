@@ -44,6 +44,10 @@ public class InvoiceItem extends PanacheEntityBase {
     @PrePersist
     @PreUpdate
     public void calculateAmount() {
-        amount = quantity.multiply(unitPrice);
+        BigDecimal calculated = quantity.multiply(unitPrice);
+        // Enhanced dirty tracking compares with equals(): a value differing only in scale would mark the line dirty
+        if (amount == null || amount.compareTo(calculated) != 0) {
+            amount = calculated;
+        }
     }
 }
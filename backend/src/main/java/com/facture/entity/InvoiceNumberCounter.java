@@ -0,0 +1,59 @@
+package com.facture.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+
+/**
+ * Next unreserved invoice sequence number for one user and one numbering period (e.g. "2026-01").
+ */
+@Entity
+@Table(name = "invoice_number_counters",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "period"}))
+public class InvoiceNumberCounter extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    public User user;
+
+    @Column(length = 7, nullable = false)
+    public String period;
+
+    @Column(name = "next_value", nullable = false)
+    public long nextValue;
+
+    public static InvoiceNumberCounter findForUpdate(Long userId, String period) {
+        return find("user.id = ?1 and period = ?2", userId, period)
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .firstResult();
+    }
+
+    /**
+     * Creates the counter unless it exists; a concurrent creation of the same row is waited for instead of
+     * failing the caller's transaction on the unique constraint.
+     */
+    public static void createIfAbsent(Long userId, String period, long nextValue) {
+        getEntityManager()
+                .createNativeQuery("insert into invoice_number_counters (user_id, period, next_value)"
+                        + " values (:userId, :period, :nextValue) on conflict (user_id, period) do nothing")
+                .setParameter("userId", userId)
+                .setParameter("period", period)
+                .setParameter("nextValue", nextValue)
+                .executeUpdate();
+    }
+
+    // Moves the counter to at least nextValue, creating it if needed; never moves it back
+    public static void advanceTo(Long userId, String period, long nextValue) {
+        getEntityManager()
+                .createNativeQuery("insert into invoice_number_counters (user_id, period, next_value)"
+                        + " values (:userId, :period, :nextValue) on conflict (user_id, period)"
+                        + " do update set next_value = greatest(invoice_number_counters.next_value, excluded.next_value)")
+                .setParameter("userId", userId)
+                .setParameter("period", period)
+                .setParameter("nextValue", nextValue)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,125 @@
+package com.facture.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * An email written in the business transaction that produced it and delivered afterwards by EmailOutboxDispatcher.
+ */
+@Entity
+@Table(name = "email_outbox")
+public class OutboxEmail extends PanacheEntityBase {
+
+    public enum Status {
+        PENDING,
+        // Claimed by a dispatcher worker; reclaimed if the worker does not report back in time
+        SENDING,
+        SENT,
+        // Gave up after the maximum number of attempts
+        DEAD
+    }
+
+    // Claimed in this order; stored as the ordinal
+    public enum Priority {
+        // Waited for by a user: OTP codes, invoices sent by hand
+        TRANSACTIONAL,
+        // Automatic reminders, queued by the thousand
+        BULK
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(nullable = false, length = 320)
+    public String recipient;
+
+    @Column(nullable = false, length = 500)
+    public String subject;
+
+    @Column(name = "html_body", nullable = false, length = 100000)
+    public String htmlBody;
+
+    @Column(name = "attachment_name")
+    public String attachmentName;
+
+    @Column(name = "attachment_content_type", length = 100)
+    public String attachmentContentType;
+
+    @Column(name = "attachment")
+    public byte[] attachment;
+
+    // Reminder whose status follows the delivery, if the email is an automatic reminder
+    @Column(name = "reminder_id")
+    public Long reminderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public Status status = Status.PENDING;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(nullable = false)
+    public Priority priority = Priority.TRANSACTIONAL;
+
+    @Column(nullable = false)
+    public int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    public LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_at")
+    public LocalDateTime claimedAt;
+
+    @Column(name = "sent_at")
+    public LocalDateTime sentAt;
+
+    @Column(name = "last_error", length = 2000)
+    public String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    public LocalDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+
+    /**
+     * Claims up to {@code limit} emails that are due, or whose previous claim is older than {@code staleBefore},
+     * for the current transaction, transactional ones first and none below {@code lowest}. Rows claimed by other
+     * nodes are skipped rather than waited for.
+     */
+    public static List<OutboxEmail> claimDue(LocalDateTime now, LocalDateTime staleBefore, Priority lowest, int limit) {
+        @SuppressWarnings("unchecked")
+        List<Number> ids = getEntityManager()
+                .createNativeQuery("select id from email_outbox"
+                        + " where ((status = 'PENDING' and next_attempt_at <= :now)"
+                        + " or (status = 'SENDING' and claimed_at < :staleBefore))"
+                        + " and priority <= :lowest"
+                        + " order by priority, next_attempt_at limit :limit for update skip locked")
+                .setParameter("now", now)
+                .setParameter("staleBefore", staleBefore)
+                .setParameter("lowest", lowest.ordinal())
+                .setParameter("limit", limit)
+                .getResultList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        List<OutboxEmail> emails = list("id in ?1", ids.stream().map(Number::longValue).toList());
+        for (OutboxEmail email : emails) {
+            email.status = Status.SENDING;
+            email.claimedAt = now;
+        }
+        return emails;
+    }
+
+    public static long deleteSentBefore(LocalDateTime cutoff) {
+        return delete("status = ?1 and sentAt < ?2", Status.SENT, cutoff);
+    }
+}
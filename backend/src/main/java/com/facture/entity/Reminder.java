@@ -3,7 +3,9 @@ package com.facture.entity;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Entity
 @Table(name = "reminders")
@@ -34,6 +36,10 @@ public class Reminder extends PanacheEntityBase {
     @Column(nullable = false)
     public ReminderStatus status = ReminderStatus.SENT;
 
+    // Escalation step of an AUTO reminder (0 for the first offset), unique per invoice
+    @Column
+    public Integer step;
+
     @PrePersist
     public void prePersist() {
         if (sentAt == null) {
@@ -49,12 +55,30 @@ public class Reminder extends PanacheEntityBase {
         return count("invoice.id", invoiceId);
     }
 
+    /**
+     * Highest automatic step already recorded for each of the given invoices, in one query.
+     * Invoices without automatic reminders are absent from the map.
+     */
+    public static Map<Long, Integer> findLastAutoSteps(List<Long> invoiceIds) {
+        Map<Long, Integer> steps = new HashMap<>();
+        getEntityManager()
+                .createQuery("select r.invoice.id, max(r.step) from Reminder r where r.invoice.id in :invoiceIds"
+                        + " and r.type = :type group by r.invoice.id", Object[].class)
+                .setParameter("invoiceIds", invoiceIds)
+                .setParameter("type", ReminderType.AUTO)
+                .getResultList()
+                .forEach(row -> steps.put((Long) row[0], (Integer) row[1]));
+        return steps;
+    }
+
     public enum ReminderType {
         AUTO,
         MANUAL
     }
 
     public enum ReminderStatus {
+        // Recorded, email not handed to the mailer yet
+        PENDING,
         SENT,
         FAILED
     }
@@ -0,0 +1,47 @@
+package com.facture.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A user's automatic reminder escalation: one reminder per offset, in days after the due date.
+ * Users without a row get the configured default offsets.
+ */
+@Entity
+@Table(name = "reminder_settings")
+public class ReminderSettings extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "user_id")
+    public Long userId;
+
+    @Column(nullable = false)
+    public boolean enabled = true;
+
+    // Ascending day offsets, comma separated (e.g. "1,7,15")
+    @Column(name = "offset_days", length = 64, nullable = false)
+    public String offsetDays;
+
+    public int[] offsets() {
+        return parseOffsets(offsetDays);
+    }
+
+    public static int[] parseOffsets(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(part -> !part.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    public static String formatOffsets(int[] offsets) {
+        return Arrays.stream(offsets).mapToObj(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    public static List<ReminderSettings> findByUserIds(List<Long> userIds) {
+        return list("userId in ?1", userIds);
+    }
+}
@@ -0,0 +1,68 @@
+package com.facture.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trace of a physically deleted invoice or client, kept so that delta sync can report the deletion.
+ */
+@Entity
+@Table(name = "sync_tombstones")
+public class SyncTombstone extends PanacheEntityBase {
+
+    public enum EntityType {
+        INVOICE,
+        CLIENT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(name = "user_id", nullable = false)
+    public Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", length = 16, nullable = false)
+    public EntityType entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    public Long entityId;
+
+    @Column(name = "change_seq", nullable = false)
+    public long changeSeq;
+
+    @Column(name = "deleted_at", nullable = false)
+    public LocalDateTime deletedAt;
+
+    public static void record(Long userId, EntityType entityType, Long entityId, long changeSeq) {
+        SyncTombstone tombstone = new SyncTombstone();
+        tombstone.userId = userId;
+        tombstone.entityType = entityType;
+        tombstone.entityId = entityId;
+        tombstone.changeSeq = changeSeq;
+        tombstone.deletedAt = LocalDateTime.now();
+        tombstone.persist();
+    }
+
+    public static List<SyncTombstone> findBetween(Long userId, long after, long upTo) {
+        return list("userId = ?1 and changeSeq > ?2 and changeSeq <= ?3 order by changeSeq, id", userId, after, upTo);
+    }
+
+    /**
+     * Drops tombstones deleted before the cutoff in two set-based statements, moving each affected user's
+     * horizon past the purged versions first.
+     */
+    public static int purgeDeletedBefore(LocalDateTime cutoff) {
+        getEntityManager()
+                .createNativeQuery("update tenant_versions v set tombstone_horizon = t.max_seq"
+                        + " from (select user_id, max(change_seq) as max_seq from sync_tombstones"
+                        + " where deleted_at < :cutoff group by user_id) t"
+                        + " where v.user_id = t.user_id and v.tombstone_horizon < t.max_seq")
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+        return (int) delete("deletedAt < ?1", cutoff);
+    }
+}
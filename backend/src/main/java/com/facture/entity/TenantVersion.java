@@ -0,0 +1,63 @@
+package com.facture.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.util.Collection;
+
+/**
+ * Per-user data version, bumped by every write to the user's invoices or clients.
+ */
+@Entity
+@Table(name = "tenant_versions")
+public class TenantVersion extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "user_id")
+    public Long userId;
+
+    @Column(nullable = false)
+    public long version;
+
+    // Tombstones up to this version have been purged; older sync tokens need a full resync
+    @Column(name = "tombstone_horizon", nullable = false)
+    public long tombstoneHorizon;
+
+    public static long findVersion(Long userId) {
+        Long version = getEntityManager()
+                .createQuery("select v.version from TenantVersion v where v.userId = :userId", Long.class)
+                .setParameter("userId", userId)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+        return version != null ? version : 0;
+    }
+
+    public static TenantVersion findByUserId(Long userId) {
+        return findById(userId);
+    }
+
+    public static TenantVersion findForUpdate(Long userId) {
+        return findById(userId, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Increments the versions of several users in one transaction, for set-based writes spanning tenants.
+     * Rows are locked in user id order so that two such writers cannot deadlock each other.
+     */
+    public static void bumpAll(Collection<Long> userIds) {
+        getEntityManager()
+                .createNativeQuery("insert into tenant_versions (user_id, version, tombstone_horizon)"
+                        + " select u.id, 0, 0 from users u where u.id in (:userIds) on conflict (user_id) do nothing")
+                .setParameter("userIds", userIds)
+                .executeUpdate();
+        getEntityManager()
+                .createNativeQuery("select user_id from tenant_versions where user_id in (:userIds)"
+                        + " order by user_id for update")
+                .setParameter("userIds", userIds)
+                .getResultList();
+        getEntityManager()
+                .createNativeQuery("update tenant_versions set version = version + 1 where user_id in (:userIds)")
+                .setParameter("userIds", userIds)
+                .executeUpdate();
+    }
+}
@@ -12,13 +12,30 @@ public class GlobalExceptionHandler implements ExceptionMapper<Exception> {
 
     @Override
     public Response toResponse(Exception exception) {
-        logger.error("Exception occurred: " + exception.getMessage(), exception);
+        if (exception instanceof PdfGenerationRejectedException || exception instanceof PreconditionFailedException) {
+            logger.warn("Request rejected: " + exception.getMessage());
+        } else {
+            logger.error("Exception occurred: " + exception.getMessage(), exception);
+        }
 
         if (exception instanceof AuthenticationException) {
             ErrorResponse error = new ErrorResponse(exception.getMessage(), 401);
             return Response.status(Response.Status.UNAUTHORIZED).entity(error).build();
         }
 
+        if (exception instanceof PdfGenerationRejectedException rejected) {
+            ErrorResponse error = new ErrorResponse(exception.getMessage(), 503);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", rejected.getRetryAfterSeconds())
+                    .entity(error)
+                    .build();
+        }
+
+        if (exception instanceof PreconditionFailedException) {
+            ErrorResponse error = new ErrorResponse(exception.getMessage(), 412);
+            return Response.status(Response.Status.PRECONDITION_FAILED).entity(error).build();
+        }
+
         if (exception instanceof jakarta.validation.ValidationException) {
             ErrorResponse error = new ErrorResponse(exception.getMessage(), 400);
             return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
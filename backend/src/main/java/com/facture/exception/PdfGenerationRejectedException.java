@@ -0,0 +1,15 @@
+package com.facture.exception;
+
+public class PdfGenerationRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PdfGenerationRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
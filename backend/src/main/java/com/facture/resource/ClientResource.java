@@ -1,16 +1,22 @@
 package com.facture.resource;
 
 import com.facture.dto.ClientDto;
+import com.facture.dto.ClientSuggestionDto;
 import com.facture.dto.CreateClientRequest;
+import com.facture.service.ClientAutocompleteService;
 import com.facture.service.ClientService;
+import com.facture.service.TenantVersionService;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
 import java.util.List;
@@ -21,25 +27,58 @@ import java.util.List;
 @RolesAllowed("User")
 public class ClientResource {
 
+    @ConfigProperty(name = "client.autocomplete.max-results", defaultValue = "20")
+    int autocompleteMaxResults;
+
     @Inject
     ClientService clientService;
 
+    @Inject
+    ClientAutocompleteService clientAutocompleteService;
+
+    @Inject
+    TenantVersionService tenantVersionService;
+
     @Inject
     JsonWebToken jwt;
 
     @GET
-    public Response getClients(@QueryParam("search") String search) {
+    public Response getClients(@QueryParam("search") String search, @Context Request request) {
         Long userId = Long.parseLong(jwt.getSubject());
+
+        EntityTag etag = tenantVersionService.entityTag(userId);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         List<ClientDto> clients = clientService.getClientsByUserId(userId, search);
-        return Response.ok(clients).build();
+        return Response.ok(clients).tag(etag).build();
+    }
+
+    @GET
+    @Path("/autocomplete")
+    public Response autocompleteClients(@QueryParam("q") String query,
+                                        @QueryParam("limit") @DefaultValue("10") int limit) {
+        Long userId = Long.parseLong(jwt.getSubject());
+        int max = Math.min(Math.max(limit, 1), autocompleteMaxResults);
+        List<ClientSuggestionDto> suggestions = clientAutocompleteService.suggest(userId, query, max);
+        return Response.ok(suggestions).build();
     }
 
     @GET
     @Path("/{id}")
-    public Response getClient(@PathParam("id") Long id) {
+    public Response getClient(@PathParam("id") Long id, @Context Request request) {
         Long userId = Long.parseLong(jwt.getSubject());
+
+        EntityTag etag = tenantVersionService.entityTag(userId);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         ClientDto client = clientService.getClientById(userId, id);
-        return Response.ok(client).build();
+        return Response.ok(client).tag(etag).build();
     }
 
     @POST
@@ -51,9 +90,10 @@ public class ClientResource {
 
     @PUT
     @Path("/{id}")
-    public Response updateClient(@PathParam("id") Long id, @Valid CreateClientRequest request) {
+    public Response updateClient(@PathParam("id") Long id, @Valid CreateClientRequest request,
+                                 @HeaderParam("If-Match") String ifMatch) {
         Long userId = Long.parseLong(jwt.getSubject());
-        ClientDto client = clientService.updateClient(userId, id, request);
+        ClientDto client = clientService.updateClient(userId, id, request, ifMatch);
         return Response.ok(client).build();
     }
 
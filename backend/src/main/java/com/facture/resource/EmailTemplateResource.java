@@ -0,0 +1,65 @@
+package com.facture.resource;
+
+import com.facture.dto.EmailTemplateDto;
+import com.facture.entity.EmailTemplate;
+import com.facture.service.EmailTemplateService;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import java.util.Locale;
+
+@Path("/api/email-templates")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@RolesAllowed("User")
+public class EmailTemplateResource {
+
+    @Inject
+    EmailTemplateService emailTemplateService;
+
+    @Inject
+    JsonWebToken jwt;
+
+    @GET
+    @Path("/{kind}")
+    public Response getTemplate(@PathParam("kind") String kind) {
+        Long userId = Long.parseLong(jwt.getSubject());
+        return Response.ok(emailTemplateService.getTemplate(userId, parseKind(kind))).build();
+    }
+
+    @PUT
+    @Path("/{kind}")
+    public Response updateTemplate(@PathParam("kind") String kind, @Valid EmailTemplateDto request) {
+        Long userId = Long.parseLong(jwt.getSubject());
+        EmailTemplate.Kind templateKind = parseKind(kind);
+        try {
+            return Response.ok(emailTemplateService.updateTemplate(userId, templateKind, request)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"message\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    // Back to the built-in email
+    @DELETE
+    @Path("/{kind}")
+    public Response deleteTemplate(@PathParam("kind") String kind) {
+        Long userId = Long.parseLong(jwt.getSubject());
+        emailTemplateService.deleteTemplate(userId, parseKind(kind));
+        return Response.noContent().build();
+    }
+
+    private static EmailTemplate.Kind parseKind(String kind) {
+        try {
+            return EmailTemplate.Kind.valueOf(kind.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new NotFoundException("Email template not found");
+        }
+    }
+}
@@ -1,21 +1,44 @@
 package com.facture.resource;
 
 import com.facture.dto.CreateInvoiceRequest;
+import com.facture.dto.ExportProgressDto;
+import com.facture.dto.ImportReportDto;
 import com.facture.dto.InvoiceDto;
+import com.facture.dto.InvoicePageDto;
 import com.facture.entity.Invoice;
 import com.facture.entity.InvoiceStatus;
+import com.facture.exception.PdfGenerationRejectedException;
+import com.facture.service.EmailService;
+import com.facture.service.InvoiceExportService;
+import com.facture.service.InvoiceImportReader;
+import com.facture.service.InvoiceImportService;
 import com.facture.service.InvoiceService;
+import com.facture.service.PdfRenderExecutor;
 import com.facture.service.PdfService;
+import com.facture.service.TenantVersionService;
+import com.facture.util.ByteRange;
+import com.facture.util.FileNames;
+import com.facture.util.InvoiceCursor;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.jboss.logging.Logger;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.time.LocalDate;
+import java.util.concurrent.Future;
 
 @Path("/api/invoices")
 @Produces(MediaType.APPLICATION_JSON)
@@ -23,6 +46,8 @@ import java.util.List;
 @RolesAllowed("User")
 public class InvoiceResource {
 
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
     @Inject
     Logger logger;
 
@@ -32,22 +57,119 @@ public class InvoiceResource {
     @Inject
     PdfService pdfService;
 
+    @Inject
+    PdfRenderExecutor pdfRenderExecutor;
+
+    @Inject
+    InvoiceExportService invoiceExportService;
+
+    @Inject
+    EmailService emailService;
+
+    @Inject
+    InvoiceImportService invoiceImportService;
+
+    @Inject
+    TenantVersionService tenantVersionService;
+
     @Inject
     JsonWebToken jwt;
 
     @GET
-    public Response getInvoices(@QueryParam("status") InvoiceStatus status) {
+    public Response getInvoices(@QueryParam("status") InvoiceStatus status,
+                                @QueryParam("cursor") String cursor,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("view") @DefaultValue("full") String view,
+                                @Context Request request) {
+        Long userId = Long.parseLong(jwt.getSubject());
+
+        if (!"full".equals(view) && !"summary".equals(view)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"message\": \"Unknown view, expected full or summary\"}")
+                    .build();
+        }
+
+        InvoiceCursor position;
+        try {
+            position = InvoiceCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"message\": \"Invalid cursor\"}")
+                    .build();
+        }
+
+        EntityTag etag = tenantVersionService.entityTag(userId);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        // The body stays a plain array; the position of the next page travels in a header
+        InvoicePageDto<?> page = "summary".equals(view)
+                ? invoiceService.getInvoiceSummaryPage(userId, status, position, limit)
+                : invoiceService.getInvoicePage(userId, status, position, limit);
+        Response.ResponseBuilder builder = Response.ok(page.invoices).tag(etag);
+        if (page.nextCursor != null) {
+            builder.header("X-Next-Cursor", page.nextCursor);
+        }
+        return builder.build();
+    }
+
+    @GET
+    @Path("/export.zip")
+    @Produces("application/zip")
+    public Response exportInvoices(@QueryParam("from") LocalDate from,
+                                   @QueryParam("to") LocalDate to,
+                                   @QueryParam("status") InvoiceStatus status) {
+        Long userId = Long.parseLong(jwt.getSubject());
+        return exportResponse(userId, from, to, status, InvoiceExportService.ExportFormat.PDF, "factures");
+    }
+
+    @GET
+    @Path("/facturx.zip")
+    @Produces("application/zip")
+    public Response exportFacturXXml(@QueryParam("from") LocalDate from,
+                                     @QueryParam("to") LocalDate to,
+                                     @QueryParam("status") InvoiceStatus status) {
+        Long userId = Long.parseLong(jwt.getSubject());
+        return exportResponse(userId, from, to, status, InvoiceExportService.ExportFormat.FACTURX_XML, "factur-x");
+    }
+
+    private Response exportResponse(Long userId, LocalDate from, LocalDate to, InvoiceStatus status,
+                                    InvoiceExportService.ExportFormat format, String filenamePrefix) {
+        InvoiceExportService.ExportProgress export = invoiceExportService.prepareExport(userId, from, to, status, format);
+
+        StreamingOutput body = output -> invoiceExportService.writeExport(export, output);
+        String filename = filenamePrefix + (from != null ? "_" + from : "") + (to != null ? "_" + to : "") + ".zip";
+        return Response.ok(body)
+                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                .header("Content-Type", "application/zip")
+                .header("X-Export-Id", export.exportId)
+                .header("X-Export-Total", export.getTotal())
+                .build();
+    }
+
+    @GET
+    @Path("/export/{exportId}/progress")
+    public Response getExportProgress(@PathParam("exportId") String exportId) {
         Long userId = Long.parseLong(jwt.getSubject());
-        List<InvoiceDto> invoices = invoiceService.getInvoicesByUserId(userId, status);
-        return Response.ok(invoices).build();
+        ExportProgressDto progress = invoiceExportService.getProgress(userId, exportId);
+        return Response.ok(progress).build();
     }
 
     @GET
     @Path("/{id}")
-    public Response getInvoice(@PathParam("id") Long id) {
+    public Response getInvoice(@PathParam("id") Long id, @Context Request request) {
         Long userId = Long.parseLong(jwt.getSubject());
+
+        EntityTag etag = tenantVersionService.entityTag(userId);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         InvoiceDto invoice = invoiceService.getInvoiceById(userId, id);
-        return Response.ok(invoice).build();
+        return Response.ok(invoice).tag(etag).build();
     }
 
     @POST
@@ -57,19 +179,47 @@ public class InvoiceResource {
         return Response.status(Response.Status.CREATED).entity(invoice).build();
     }
 
+    /**
+     * Bulk import: one invoice per line as JSON lines, or CSV with one invoice line per record.
+     * Rows keep their invoice_number; with allocateNumbers=true, rows without one are numbered like new invoices.
+     * Responds 200 with a per-row report even when some rows were rejected.
+     */
+    @POST
+    @Path("/import")
+    @Consumes({"application/x-ndjson", "text/csv"})
+    public Response importInvoices(InputStream body, @Context HttpHeaders headers,
+                                   @QueryParam("allocateNumbers") @DefaultValue("false") boolean allocateNumbers)
+            throws IOException {
+        Long userId = Long.parseLong(jwt.getSubject());
+        InvoiceImportReader.Format format = "csv".equalsIgnoreCase(headers.getMediaType().getSubtype())
+                ? InvoiceImportReader.Format.CSV
+                : InvoiceImportReader.Format.JSON_LINES;
+
+        try {
+            ImportReportDto report = invoiceImportService.importInvoices(userId, body, format, allocateNumbers);
+            return Response.ok(report).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"message\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
     @PUT
     @Path("/{id}")
-    public Response updateInvoice(@PathParam("id") Long id, @Valid CreateInvoiceRequest request) {
+    public Response updateInvoice(@PathParam("id") Long id, @Valid CreateInvoiceRequest request,
+                                  @HeaderParam("If-Match") String ifMatch) {
         Long userId = Long.parseLong(jwt.getSubject());
-        InvoiceDto invoice = invoiceService.updateInvoice(userId, id, request);
+        InvoiceDto invoice = invoiceService.updateInvoice(userId, id, request, ifMatch);
         return Response.ok(invoice).build();
     }
 
     @PUT
     @Path("/{id}/status")
-    public Response updateInvoiceStatus(@PathParam("id") Long id, @QueryParam("status") InvoiceStatus status) {
+    public Response updateInvoiceStatus(@PathParam("id") Long id, @QueryParam("status") InvoiceStatus status,
+                                        @HeaderParam("If-Match") String ifMatch) {
         Long userId = Long.parseLong(jwt.getSubject());
-        InvoiceDto invoice = invoiceService.updateInvoiceStatus(userId, id, status);
+        InvoiceDto invoice = invoiceService.updateInvoiceStatus(userId, id, status, ifMatch);
         return Response.ok(invoice).build();
     }
 
@@ -84,12 +234,14 @@ public class InvoiceResource {
     @GET
     @Path("/{id}/pdf")
     @Produces("application/pdf")
-    public Response downloadInvoicePdf(@PathParam("id") Long id) {
+    public Response downloadInvoicePdf(@PathParam("id") Long id,
+                                       @HeaderParam("Range") String range,
+                                       @HeaderParam("If-Range") String ifRange) {
         Long userId = Long.parseLong(jwt.getSubject());
 
         try {
-            // Get the invoice entity (not DTO) with all relations
-            Invoice invoice = Invoice.findById(id);
+            // Load everything the renderer needs up front, it runs outside this request's thread
+            Invoice invoice = Invoice.findByIdWithDocumentData(id);
             if (invoice == null || !invoice.user.id.equals(userId)) {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity("{\"message\": \"Invoice not found\"}")
@@ -97,14 +249,43 @@ public class InvoiceResource {
                         .build();
             }
 
-            // Generate Factur-X PDF
-            byte[] pdfBytes = pdfService.generateFacturXPdf(invoice);
+            // The cache key covers every rendered field, so it doubles as a strong ETag
+            String cacheKey = pdfService.cacheKey(invoice);
+            String etag = "\"" + cacheKey + "\"";
+            String filename = FileNames.safe(invoice.invoiceNumber) + "_Factur-X.pdf";
+
+            byte[] cached = pdfService.findCachedFacturXPdf(invoice, cacheKey);
+            if (cached != null) {
+                return cachedPdfResponse(cached, etag, filename, ifRange == null || ifRange.equals(etag) ? range : null);
+            }
 
-            // Return PDF with proper headers
-            String filename = invoice.invoiceNumber + "_Factur-X.pdf";
-            return Response.ok(pdfBytes)
+            // Not generated yet: render on the PDF pool and stream the exporter output as it is written. The render
+            // only starts once the body is written, so a response that is never sent (HEAD, early abort) holds no renderer
+            StreamingOutput body = output -> {
+                PipedInputStream pipe = new PipedInputStream(PIPE_BUFFER_SIZE);
+                PipedOutputStream sink = new PipedOutputStream(pipe);
+                try (pipe) {
+                    Future<Void> rendering = pdfRenderExecutor.start(() -> {
+                        try (sink) {
+                            pdfService.streamFacturXPdf(invoice, cacheKey, sink);
+                        }
+                        return null;
+                    });
+                    // Closing the pipe on a client abort makes the renderer's next write fail, which ends the task
+                    pipe.transferTo(output);
+                    // A failed render closes the pipe early, so only the future tells a complete PDF from a truncated one
+                    pdfRenderExecutor.await(rendering);
+                } catch (PdfGenerationRejectedException e) {
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    logger.errorf("Error streaming PDF for invoice %d: %s", id, e.getMessage(), e);
+                    throw e;
+                }
+            };
+            return Response.ok(body)
                     .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
                     .header("Content-Type", "application/pdf")
+                    .header("ETag", etag)
                     .build();
 
         } catch (Exception e) {
@@ -116,13 +297,73 @@ public class InvoiceResource {
         }
     }
 
+    private Response cachedPdfResponse(byte[] pdf, String etag, String filename, String range) {
+        ByteRange byteRange = ByteRange.parse(range, pdf.length);
+
+        if (byteRange == ByteRange.UNSATISFIABLE) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + pdf.length)
+                    .header("Accept-Ranges", "bytes")
+                    .build();
+        }
+
+        Response.ResponseBuilder builder;
+        if (byteRange == null) {
+            builder = Response.ok(pdf);
+        } else {
+            StreamingOutput slice = output -> output.write(pdf, (int) byteRange.start(), (int) byteRange.length());
+            builder = Response.status(Response.Status.PARTIAL_CONTENT)
+                    .entity(slice)
+                    .header("Content-Range", byteRange.contentRange(pdf.length))
+                    .header("Content-Length", byteRange.length());
+        }
+
+        return builder
+                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                .header("Content-Type", "application/pdf")
+                .header("Accept-Ranges", "bytes")
+                .header("ETag", etag)
+                .build();
+    }
+
+    @GET
+    @Path("/{id}/facturx.xml")
+    @Produces(MediaType.APPLICATION_XML)
+    public Response downloadFacturXXml(@PathParam("id") Long id) {
+        Long userId = Long.parseLong(jwt.getSubject());
+
+        Invoice invoice = Invoice.findByIdWithDocumentData(id);
+        if (invoice == null || !invoice.user.id.equals(userId)) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"message\": \"Invoice not found\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+
+        byte[] xml;
+        try {
+            xml = pdfRenderExecutor.call(() -> pdfService.generateFacturXXml(invoice));
+        } catch (IOException e) {
+            logger.errorf("Error generating Factur-X XML for invoice %d: %s", id, e.getMessage(), e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"message\": \"Error generating Factur-X XML: " + e.getMessage() + "\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        String filename = FileNames.safe(invoice.invoiceNumber) + "_factur-x.xml";
+        return Response.ok(xml)
+                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                .header("Content-Type", MediaType.APPLICATION_XML)
+                .build();
+    }
+
     @POST
     @Path("/{id}/send")
     public Response sendInvoiceByEmail(@PathParam("id") Long id) {
         Long userId = Long.parseLong(jwt.getSubject());
 
         try {
-            Invoice invoice = Invoice.findById(id);
+            Invoice invoice = Invoice.findByIdWithDocumentData(id);
             if (invoice == null || !invoice.user.id.equals(userId)) {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity("{\"message\": \"Invoice not found\"}")
@@ -130,15 +371,17 @@ public class InvoiceResource {
             }
 
             // Generate PDF
-            byte[] pdfBytes = pdfService.generateFacturXPdf(invoice);
+            byte[] pdfBytes = pdfRenderExecutor.call(() -> pdfService.getFacturXPdf(invoice));
 
-            // TODO: Send email with PDF attachment
-            // emailService.sendInvoiceEmail(invoice.client.email, invoice.client.companyName, invoice.invoiceNumber, pdfBytes);
+            // Queued in the outbox, delivered in the background
+            emailService.sendInvoiceEmail(userId, invoice.client.email, invoice.client.companyName, invoice.invoiceNumber, pdfBytes);
 
             return Response.ok()
                     .entity("{\"message\": \"Invoice sent successfully\"}")
                     .build();
 
+        } catch (PdfGenerationRejectedException e) {
+            throw e;
         } catch (Exception e) {
             logger.errorf("Error sending invoice %d: %s", id, e.getMessage(), e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,44 @@
+package com.facture.resource;
+
+import com.facture.dto.ReminderSettingsDto;
+import com.facture.service.ReminderService;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+@Path("/api/reminders")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@RolesAllowed("User")
+public class ReminderResource {
+
+    @Inject
+    ReminderService reminderService;
+
+    @Inject
+    JsonWebToken jwt;
+
+    @GET
+    @Path("/settings")
+    public Response getSettings() {
+        Long userId = Long.parseLong(jwt.getSubject());
+        return Response.ok(reminderService.getSettings(userId)).build();
+    }
+
+    @PUT
+    @Path("/settings")
+    public Response updateSettings(@Valid ReminderSettingsDto request) {
+        Long userId = Long.parseLong(jwt.getSubject());
+        try {
+            return Response.ok(reminderService.updateSettings(userId, request)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"message\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.facture.resource;
+
+import com.facture.dto.SyncDto;
+import com.facture.service.SyncService;
+import com.facture.util.SyncToken;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+@Path("/api/sync")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed("User")
+public class SyncResource {
+
+    @Inject
+    SyncService syncService;
+
+    @Inject
+    JsonWebToken jwt;
+
+    @GET
+    public Response sync(@QueryParam("since") String since) {
+        Long userId = Long.parseLong(jwt.getSubject());
+
+        SyncToken token;
+        try {
+            token = SyncToken.decode(since);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"message\": \"Invalid sync token\"}")
+                    .build();
+        }
+
+        SyncDto sync = syncService.changesSince(userId, token);
+        return Response.ok(sync).build();
+    }
+}
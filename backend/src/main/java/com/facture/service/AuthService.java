@@ -65,7 +65,7 @@ public class AuthService {
         user.otpExpiry = otpUtil.getOtpExpiry();
         user.persist();
 
-        // Send OTP by email
+        // Queue the OTP email, delivered by the outbox once this transaction commits
         emailService.sendOtpEmail(user.email, otp, user.firstName);
         logger.infof("OTP sent to user: %s", request.email);
     }
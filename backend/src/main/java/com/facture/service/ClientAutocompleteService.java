@@ -0,0 +1,214 @@
+package com.facture.service;
+
+import com.facture.dto.ClientSuggestionDto;
+import com.facture.entity.Client;
+import com.facture.util.SearchText;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory client autocomplete, one prefix index per user. An index is loaded from the database on the
+ * user's first lookup, then kept current from {@link ClientChangedEvent}s, so typing in the client picker
+ * never needs a connection. Indexes of inactive users are dropped after an idle timeout, and the least
+ * recently used ones once more than the configured number of users are held.
+ */
+@ApplicationScoped
+public class ClientAutocompleteService {
+
+    private static final Logger logger = Logger.getLogger(ClientAutocompleteService.class);
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[\\s@._'-]+");
+
+    @ConfigProperty(name = "client.autocomplete.max-tenants", defaultValue = "1000")
+    int maxTenants;
+
+    @ConfigProperty(name = "client.autocomplete.idle-timeout", defaultValue = "30M")
+    Duration idleTimeout;
+
+    // Access-ordered for LRU eviction, guarded by its own monitor
+    private final LinkedHashMap<Long, TenantIndex> tenants = new LinkedHashMap<>(64, 0.75f, true);
+
+    public List<ClientSuggestionDto> suggest(Long userId, String query, int limit) {
+        List<String> tokens = words(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        TenantIndex index = tenant(userId);
+        synchronized (index) {
+            if (!index.loaded) {
+                index.load(Client.findByUserId(userId));
+            }
+            index.lastAccess = System.nanoTime();
+            return index.search(tokens, limit);
+        }
+    }
+
+    void onClientChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ClientChangedEvent event) {
+        TenantIndex index;
+        synchronized (tenants) {
+            index = tenants.get(event.userId());
+        }
+        if (index == null) {
+            // Not loaded, the next lookup reads the committed state
+            return;
+        }
+
+        synchronized (index) {
+            if (!index.loaded) {
+                return;
+            }
+            if (event.client() == null) {
+                index.remove(event.clientId());
+            } else {
+                index.put(event.client());
+            }
+        }
+    }
+
+    @Scheduled(every = "5m", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void evictIdle() {
+        long threshold = System.nanoTime() - idleTimeout.toNanos();
+        int evicted = 0;
+        synchronized (tenants) {
+            var iterator = tenants.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().lastAccess - threshold < 0) {
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            logger.debugf("Evicted %d idle client autocomplete indexes", evicted);
+        }
+    }
+
+    // Folded words of a field or a query, split on the separators found in names and email addresses
+    private static List<String> words(String value) {
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATORS.split(SearchText.normalize(value))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private TenantIndex tenant(Long userId) {
+        synchronized (tenants) {
+            TenantIndex index = tenants.computeIfAbsent(userId, id -> new TenantIndex());
+            if (tenants.size() > maxTenants) {
+                var eldest = tenants.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return index;
+        }
+    }
+
+    private static class TenantIndex {
+
+        // Folded word -> ids of the clients having a field word equal to it
+        final TreeMap<String, Set<Long>> words = new TreeMap<>();
+        final Map<Long, IndexedClient> clients = new HashMap<>();
+        boolean loaded;
+        volatile long lastAccess = System.nanoTime();
+
+        void load(List<Client> entities) {
+            for (Client client : entities) {
+                put(ClientSuggestionDto.fromEntity(client));
+            }
+            loaded = true;
+        }
+
+        void put(ClientSuggestionDto client) {
+            remove(client.id);
+            IndexedClient indexed = new IndexedClient(client);
+            clients.put(client.id, indexed);
+            for (String word : indexed.words) {
+                words.computeIfAbsent(word, w -> new HashSet<>()).add(client.id);
+            }
+        }
+
+        void remove(Long clientId) {
+            IndexedClient previous = clients.remove(clientId);
+            if (previous == null) {
+                return;
+            }
+            for (String word : previous.words) {
+                Set<Long> ids = words.get(word);
+                if (ids != null && ids.remove(clientId) && ids.isEmpty()) {
+                    words.remove(word);
+                }
+            }
+        }
+
+        /**
+         * Clients having, for every token, a word that starts with it. Clients whose company name starts
+         * with the whole query come first, then by company name.
+         */
+        List<ClientSuggestionDto> search(List<String> tokens, int limit) {
+            Set<Long> candidates = null;
+            for (String token : tokens) {
+                Set<Long> matches = new HashSet<>();
+                for (Set<Long> ids : words.subMap(token, true, token + Character.MAX_VALUE, true).values()) {
+                    matches.addAll(ids);
+                }
+                if (candidates == null) {
+                    candidates = matches;
+                } else {
+                    candidates.retainAll(matches);
+                }
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            String query = String.join(" ", tokens);
+            List<IndexedClient> ranked = new ArrayList<>(candidates.size());
+            for (Long id : candidates) {
+                ranked.add(clients.get(id));
+            }
+            ranked.sort(Comparator.comparing((IndexedClient client) -> !client.companyName.startsWith(query))
+                    .thenComparing(client -> client.companyName)
+                    .thenComparing(client -> client.suggestion.id));
+
+            List<ClientSuggestionDto> result = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (int i = 0; i < ranked.size() && i < limit; i++) {
+                result.add(ranked.get(i).suggestion);
+            }
+            return result;
+        }
+
+        private static class IndexedClient {
+
+            final ClientSuggestionDto suggestion;
+            final String companyName;
+            final Set<String> words = new HashSet<>();
+
+            IndexedClient(ClientSuggestionDto suggestion) {
+                this.suggestion = suggestion;
+                this.companyName = SearchText.normalize(suggestion.companyName);
+                words.addAll(words(suggestion.companyName));
+                words.addAll(words(suggestion.contactName));
+                words.addAll(words(suggestion.email));
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.facture.service;
+
+import com.facture.dto.ClientSuggestionDto;
+
+/**
+ * Fired by {@link ClientService} when a client is created, updated or deleted ({@code client} is null).
+ * Observers that need the committed state should use {@code @Observes(during = TransactionPhase.AFTER_SUCCESS)}.
+ */
+public record ClientChangedEvent(Long userId, Long clientId, ClientSuggestionDto client) {
+}
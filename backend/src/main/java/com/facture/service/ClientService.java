@@ -1,12 +1,18 @@
 package com.facture.service;
 
 import com.facture.dto.ClientDto;
+import com.facture.dto.ClientSuggestionDto;
 import com.facture.dto.CreateClientRequest;
 import com.facture.entity.Client;
+import com.facture.entity.Invoice;
+import com.facture.entity.SyncTombstone;
 import com.facture.entity.User;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -14,6 +20,15 @@ import java.util.stream.Collectors;
 @ApplicationScoped
 public class ClientService {
 
+    @ConfigProperty(name = "client.search.max-results", defaultValue = "20")
+    int searchMaxResults;
+
+    @Inject
+    TenantVersionService tenantVersions;
+
+    @Inject
+    Event<ClientChangedEvent> clientChanged;
+
     @Transactional
     public ClientDto createClient(Long userId, CreateClientRequest request) {
         User user = User.findById(userId);
@@ -24,7 +39,9 @@ public class ClientService {
         Client client = new Client();
         client.user = user;
         updateClientFromRequest(client, request);
+        client.changeSeq = tenantVersions.bump(userId, null);
         client.persist();
+        clientChanged.fire(new ClientChangedEvent(userId, client.id, ClientSuggestionDto.fromEntity(client)));
 
         return ClientDto.fromEntity(client);
     }
@@ -32,7 +49,7 @@ public class ClientService {
     public List<ClientDto> getClientsByUserId(Long userId, String search) {
         List<Client> clients;
         if (search != null && !search.isEmpty()) {
-            clients = Client.findByUserIdWithSearch(userId, search);
+            clients = Client.findByUserIdWithSearch(userId, search, searchMaxResults);
         } else {
             clients = Client.findByUserId(userId);
         }
@@ -48,14 +65,16 @@ public class ClientService {
     }
 
     @Transactional
-    public ClientDto updateClient(Long userId, Long clientId, CreateClientRequest request) {
+    public ClientDto updateClient(Long userId, Long clientId, CreateClientRequest request, String ifMatch) {
         Client client = Client.findById(clientId);
         if (client == null || !client.user.id.equals(userId)) {
             throw new NotFoundException("Client not found");
         }
+        client.changeSeq = tenantVersions.bump(userId, ifMatch);
 
         updateClientFromRequest(client, request);
         client.persist();
+        clientChanged.fire(new ClientChangedEvent(userId, clientId, ClientSuggestionDto.fromEntity(client)));
 
         return ClientDto.fromEntity(client);
     }
@@ -66,7 +85,14 @@ public class ClientService {
         if (client == null || !client.user.id.equals(userId)) {
             throw new NotFoundException("Client not found");
         }
+        // The client's invoices go with it through the cascade
+        long changeSeq = tenantVersions.bump(userId, null);
+        for (Invoice invoice : client.invoices) {
+            SyncTombstone.record(userId, SyncTombstone.EntityType.INVOICE, invoice.id, changeSeq);
+        }
+        SyncTombstone.record(userId, SyncTombstone.EntityType.CLIENT, clientId, changeSeq);
         client.delete();
+        clientChanged.fire(new ClientChangedEvent(userId, clientId, null));
     }
 
     private void updateClientFromRequest(Client client, CreateClientRequest request) {
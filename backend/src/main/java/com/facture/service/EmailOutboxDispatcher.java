@@ -0,0 +1,364 @@
+package com.facture.service;
+
+import com.facture.entity.OutboxEmail;
+import com.facture.entity.Reminder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.mailer.Mail;
+import io.quarkus.mailer.reactive.ReactiveMailer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers the email outbox. Workers claim due emails in short transactions (skipping rows claimed by other nodes),
+ * hand the whole batch to the reactive mailer with no transaction or connection open, then record the outcomes of
+ * the batch in one transaction. The mailer keeps a pool of persistent SMTP connections (quarkus.mailer.max-pool-size,
+ * keep-alive), so consecutive messages reuse a connection instead of paying a handshake each; the number of messages
+ * in flight to one recipient domain is capped so a single provider is never flooded. A failed email is retried with
+ * exponential backoff and jitter until max-attempts, then left as DEAD for inspection. Delivery is at least once:
+ * an email whose worker died mid-send is reclaimed after the claim timeout.
+ * <p>
+ * Transactional email (OTP codes, invoices) is claimed ahead of bulk reminders, and priority workers claim nothing
+ * else, so a login code never queues behind the morning's reminder run.
+ * <p>
+ * A batch never outlives its claim: a send only starts while it can still time out and be recorded before the claim
+ * timeout, and the emails that could not start by then (rate or per-domain limit) go back to the outbox unclaimed.
+ */
+@ApplicationScoped
+public class EmailOutboxDispatcher {
+
+    private static final Logger logger = Logger.getLogger(EmailOutboxDispatcher.class);
+    private static final int MAX_ERROR_LENGTH = 2000;
+    // Left between the last send's timeout and the claim timeout to record the batch
+    private static final Duration RECORD_MARGIN = Duration.ofSeconds(5);
+
+    @ConfigProperty(name = "email.outbox.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "email.outbox.workers", defaultValue = "2")
+    int workerCount;
+
+    @ConfigProperty(name = "email.outbox.priority-workers", defaultValue = "1")
+    int priorityWorkerCount;
+
+    @ConfigProperty(name = "email.outbox.batch-size", defaultValue = "50")
+    int batchSize;
+
+    @ConfigProperty(name = "email.outbox.max-per-domain", defaultValue = "5")
+    int maxPerDomain;
+
+    @ConfigProperty(name = "email.outbox.send-timeout", defaultValue = "60S")
+    Duration sendTimeout;
+
+    @ConfigProperty(name = "email.outbox.poll-interval", defaultValue = "5S")
+    Duration pollInterval;
+
+    @ConfigProperty(name = "email.outbox.rate-per-second", defaultValue = "10")
+    double ratePerSecond;
+
+    @ConfigProperty(name = "email.outbox.max-attempts", defaultValue = "8")
+    int maxAttempts;
+
+    @ConfigProperty(name = "email.outbox.backoff.initial", defaultValue = "30S")
+    Duration initialBackoff;
+
+    @ConfigProperty(name = "email.outbox.backoff.max", defaultValue = "1H")
+    Duration maxBackoff;
+
+    @ConfigProperty(name = "email.outbox.claim-timeout", defaultValue = "5M")
+    Duration claimTimeout;
+
+    @ConfigProperty(name = "email.outbox.sent-retention", defaultValue = "7D")
+    Duration sentRetention;
+
+    @Inject
+    ReactiveMailer mailer;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Released after commit of a new email so that an idle worker does not wait for the next poll
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final Semaphore priorityWakeUp = new Semaphore(0);
+    private final List<Thread> workers = new ArrayList<>();
+    private final Map<String, Semaphore> domainPermits = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object pacingLock = new Object();
+    private long nextSendSlot;
+    private volatile boolean running;
+
+    private Counter sent;
+    private Counter retried;
+    private Counter dead;
+    private Timer deliveryLag;
+    private Timer sendDuration;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (sendTimeout.plus(RECORD_MARGIN).compareTo(claimTimeout) >= 0) {
+            throw new IllegalStateException("email.outbox.send-timeout must be at least " + RECORD_MARGIN.toSeconds()
+                    + "s shorter than email.outbox.claim-timeout");
+        }
+
+        sent = registry.counter("email.outbox.deliveries", "result", "sent");
+        retried = registry.counter("email.outbox.deliveries", "result", "retried");
+        dead = registry.counter("email.outbox.deliveries", "result", "dead");
+        deliveryLag = registry.timer("email.outbox.delivery.lag");
+        sendDuration = registry.timer("email.outbox.send.duration");
+        registry.gauge("email.outbox.send.in-flight", inFlight);
+
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            startWorker("email-outbox-" + (i + 1), OutboxEmail.Priority.BULK, wakeUp);
+        }
+        for (int i = 0; i < priorityWorkerCount; i++) {
+            startWorker("email-outbox-priority-" + (i + 1), OutboxEmail.Priority.TRANSACTIONAL, priorityWakeUp);
+        }
+        logger.infof("Email outbox dispatcher started with %d workers and %d priority workers",
+                workerCount, priorityWorkerCount);
+    }
+
+    private void startWorker(String name, OutboxEmail.Priority lowest, Semaphore wake) {
+        Thread worker = new Thread(() -> work(lowest, wake), name);
+        worker.setDaemon(true);
+        worker.start();
+        workers.add(worker);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    void onQueued(@Observes(during = TransactionPhase.AFTER_SUCCESS) OutboxEmailQueued event) {
+        if (!running) {
+            return;
+        }
+        if (event.priority() == OutboxEmail.Priority.TRANSACTIONAL && priorityWakeUp.availablePermits() < priorityWorkerCount) {
+            priorityWakeUp.release();
+        }
+        if (wakeUp.availablePermits() < workerCount) {
+            wakeUp.release();
+        }
+    }
+
+    @Scheduled(cron = "0 15 4 * * ?", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    void purgeSent() {
+        long purged = OutboxEmail.deleteSentBefore(LocalDateTime.now().minus(sentRetention));
+        if (purged > 0) {
+            logger.infof("Purged %d delivered emails from the outbox", purged);
+        }
+    }
+
+    private void work(OutboxEmail.Priority lowest, Semaphore wake) {
+        while (running) {
+            try {
+                long claimedAt = System.nanoTime();
+                List<Delivery> claimed = QuarkusTransaction.requiringNew().call(() -> claim(lowest));
+                if (claimed.isEmpty()) {
+                    wake.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                deliver(claimed, claimedAt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warnf("Email outbox worker error: %s", e.getMessage());
+                try {
+                    Thread.sleep(pollInterval.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<Delivery> claim(OutboxEmail.Priority lowest) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Delivery> deliveries = new ArrayList<>();
+        for (OutboxEmail email : OutboxEmail.claimDue(now, now.minus(claimTimeout), lowest, batchSize)) {
+            deliveries.add(new Delivery(email.id, email.recipient, email.subject, email.htmlBody, email.attachmentName,
+                    email.attachmentContentType, email.attachment, email.reminderId, email.attempts, email.createdAt));
+        }
+        return deliveries;
+    }
+
+    private void deliver(List<Delivery> batch, long claimedAt) throws InterruptedException {
+        // Last moment a send may start and still time out and be recorded before the claim goes stale
+        long startDeadline = claimedAt + claimTimeout.minus(sendTimeout).minus(RECORD_MARGIN).toNanos();
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(batch.size());
+        List<Long> deferred = new ArrayList<>();
+        for (Delivery delivery : batch) {
+            Semaphore permits = domainPermits.computeIfAbsent(domain(delivery.recipient), domain -> new Semaphore(maxPerDomain));
+            if (!awaitSendSlot(startDeadline)
+                    || !permits.tryAcquire(startDeadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                deferred.add(delivery.id);
+                continue;
+            }
+            outcomes.add(send(delivery, permits));
+        }
+
+        List<Outcome> results = new ArrayList<>(outcomes.size());
+        for (CompletableFuture<Outcome> outcome : outcomes) {
+            results.add(outcome.join());
+        }
+        QuarkusTransaction.requiringNew().run(() -> record(results, deferred));
+    }
+
+    // Called with a domain permit held; the permit is released whatever happens to the send
+    private CompletableFuture<Outcome> send(Delivery delivery, Semaphore permits) {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            // Completes on the mailer's event loop: only non-blocking work in the callback
+            return mailer.send(toMail(delivery))
+                    .ifNoItem().after(sendTimeout).fail()
+                    .subscribeAsCompletionStage()
+                    .handle((ignored, error) -> sendFinished(delivery, permits, start, error));
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(sendFinished(delivery, permits, start, e));
+        }
+    }
+
+    private Outcome sendFinished(Delivery delivery, Semaphore permits, long start, Throwable error) {
+        permits.release();
+        inFlight.decrementAndGet();
+        sendDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Outcome(delivery, error);
+    }
+
+    private static Mail toMail(Delivery delivery) {
+        Mail mail = Mail.withHtml(delivery.recipient, delivery.subject, delivery.htmlBody);
+        if (delivery.attachment != null) {
+            mail.addAttachment(delivery.attachmentName, delivery.attachment, delivery.attachmentContentType);
+        }
+        return mail;
+    }
+
+    private static String domain(String recipient) {
+        int at = recipient.lastIndexOf('@');
+        return (at >= 0 ? recipient.substring(at + 1) : recipient).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void record(List<Outcome> results, List<Long> deferred) {
+        if (!deferred.isEmpty()) {
+            // Not attempted: no attempt counted, claimable again right away
+            OutboxEmail.update("status = ?1, claimedAt = null where id in ?2 and status = ?3",
+                    OutboxEmail.Status.PENDING, deferred, OutboxEmail.Status.SENDING);
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        List<Long> sentReminderIds = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Outcome outcome : results) {
+            Delivery delivery = outcome.delivery;
+            if (outcome.error != null) {
+                recordFailure(delivery, outcome.error);
+                continue;
+            }
+            sentIds.add(delivery.id);
+            if (delivery.reminderId != null) {
+                sentReminderIds.add(delivery.reminderId);
+            }
+            deliveryLag.record(Duration.between(delivery.createdAt, now));
+        }
+
+        if (!sentIds.isEmpty()) {
+            OutboxEmail.update("status = ?1, sentAt = ?2, attempts = attempts + 1, lastError = null where id in ?3",
+                    OutboxEmail.Status.SENT, now, sentIds);
+            sent.increment(sentIds.size());
+        }
+        if (!sentReminderIds.isEmpty()) {
+            Reminder.update("status = ?1, sentAt = ?2 where id in ?3", Reminder.ReminderStatus.SENT, now, sentReminderIds);
+        }
+    }
+
+    private void recordFailure(Delivery delivery, Throwable error) {
+        int attempts = delivery.attempts + 1;
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+
+        if (attempts >= maxAttempts) {
+            OutboxEmail.update("status = ?1, attempts = ?2, lastError = ?3 where id = ?4",
+                    OutboxEmail.Status.DEAD, attempts, message, delivery.id);
+            if (delivery.reminderId != null) {
+                Reminder.update("status = ?1 where id = ?2", Reminder.ReminderStatus.FAILED, delivery.reminderId);
+            }
+            dead.increment();
+            logger.errorf("Email %d to %s given up after %d attempts: %s", delivery.id, delivery.recipient, attempts, message);
+            return;
+        }
+
+        LocalDateTime nextAttempt = LocalDateTime.now().plus(backoff(attempts));
+        OutboxEmail.update("status = ?1, attempts = ?2, lastError = ?3, nextAttemptAt = ?4 where id = ?5",
+                OutboxEmail.Status.PENDING, attempts, message, nextAttempt, delivery.id);
+        retried.increment();
+        logger.warnf("Email %d to %s failed (attempt %d), retrying at %s: %s",
+                delivery.id, delivery.recipient, attempts, nextAttempt, message);
+    }
+
+    // initial * 2^(attempts - 1), capped, with up to half of it taken off at random so retries spread out
+    private Duration backoff(int attempts) {
+        long delay = initialBackoff.toMillis() << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, maxBackoff.toMillis());
+        return Duration.ofMillis(delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+
+    // Spaces the sends of all workers evenly at the configured rate; false if the next slot is after the deadline
+    private boolean awaitSendSlot(long deadline) throws InterruptedException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long slot;
+        synchronized (pacingLock) {
+            slot = Math.max(System.nanoTime(), nextSendSlot);
+            if (slot - deadline > 0) {
+                return false;
+            }
+            nextSendSlot = slot + interval;
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return true;
+    }
+
+    private record Outcome(Delivery delivery, Throwable error) {
+    }
+
+    private record Delivery(Long id, String recipient, String subject, String htmlBody, String attachmentName,
+                            String attachmentContentType, byte[] attachment, Long reminderId, int attempts,
+                            LocalDateTime createdAt) {
+    }
+}
@@ -1,104 +1,100 @@
 package com.facture.service;
 
-import io.quarkus.mailer.Mail;
-import io.quarkus.mailer.Mailer;
+import com.facture.entity.EmailTemplate;
+import com.facture.entity.OutboxEmail;
+import com.facture.util.FileNames;
+import io.quarkus.qute.CheckedTemplate;
+import io.quarkus.qute.TemplateInstance;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
 import org.jboss.logging.Logger;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the application's emails and queues them in the outbox, as part of the caller's transaction when there
+ * is one. Nothing here talks to the mail server: delivery, retries and throughput belong to EmailOutboxDispatcher.
+ * <p>
+ * Bodies come from the type-checked templates in templates/EmailService, parsed once at startup; invoice and
+ * reminder emails use the sender's own template instead when they saved one (see EmailTemplateService).
+ */
 @ApplicationScoped
 public class EmailService {
 
+    @CheckedTemplate
+    static class Templates {
+
+        static native TemplateInstance otp(String firstName, String otp);
+
+        static native TemplateInstance invoice(String clientName, String invoiceNumber);
+
+        static native TemplateInstance reminder(String clientName, String invoiceNumber, int daysOverdue);
+    }
+
+    @Inject
+    EmailTemplateService emailTemplates;
+
     @Inject
-    Mailer mailer;
+    Event<OutboxEmailQueued> emailQueued;
 
     @Inject
     Logger logger;
 
+    @Transactional
     public void sendOtpEmail(String to, String otp, String firstName) {
         String subject = "Votre code de vérification - Facture Freelance";
-        String body = buildOtpEmailBody(otp, firstName);
-
-        try {
-            mailer.send(Mail.withHtml(to, subject, body));
-            logger.infof("OTP email sent to: %s", to);
-        } catch (Exception e) {
-            logger.errorf("Failed to send OTP email to %s: %s", to, e.getMessage());
-            throw new RuntimeException("Failed to send OTP email", e);
-        }
+        String body = Templates.otp(firstName, otp).render();
+        queue(to, subject, body, null, null, null, null, OutboxEmail.Priority.TRANSACTIONAL);
+        logger.infof("OTP email queued for: %s", to);
     }
 
-    public void sendInvoiceEmail(String to, String clientName, String invoiceNumber, byte[] pdfAttachment) {
-        String subject = String.format("Facture %s - Facture Freelance", invoiceNumber);
-        String body = buildInvoiceEmailBody(clientName, invoiceNumber);
-
-        try {
-            mailer.send(Mail.withHtml(to, subject, body)
-                    .addAttachment(invoiceNumber + ".pdf", pdfAttachment, "application/pdf"));
-            logger.infof("Invoice email sent to: %s", to);
-        } catch (Exception e) {
-            logger.errorf("Failed to send invoice email to %s: %s", to, e.getMessage());
-            throw new RuntimeException("Failed to send invoice email", e);
-        }
-    }
+    @Transactional
+    public void sendInvoiceEmail(Long userId, String to, String clientName, String invoiceNumber, byte[] pdfAttachment) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("clientName", clientName);
+        data.put("invoiceNumber", invoiceNumber);
+        EmailTemplateService.RenderedEmail custom = emailTemplates.render(userId, EmailTemplate.Kind.INVOICE, data);
 
-    public void sendReminderEmail(String to, String clientName, String invoiceNumber, int daysOverdue) {
-        String subject = String.format("Relance - Facture %s en retard", invoiceNumber);
-        String body = buildReminderEmailBody(clientName, invoiceNumber, daysOverdue);
-
-        try {
-            mailer.send(Mail.withHtml(to, subject, body));
-            logger.infof("Reminder email sent to: %s", to);
-        } catch (Exception e) {
-            logger.errorf("Failed to send reminder email to %s: %s", to, e.getMessage());
-            throw new RuntimeException("Failed to send reminder email", e);
-        }
+        String subject = custom != null ? custom.subject() : String.format("Facture %s - Facture Freelance", invoiceNumber);
+        String body = custom != null ? custom.body() : Templates.invoice(clientName, invoiceNumber).render();
+        queue(to, subject, body, FileNames.safe(invoiceNumber) + ".pdf", "application/pdf", pdfAttachment, null,
+                OutboxEmail.Priority.TRANSACTIONAL);
+        logger.infof("Invoice email queued for: %s", to);
     }
 
-    private String buildOtpEmailBody(String otp, String firstName) {
-        return String.format("""
-                <html>
-                <body style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto;">
-                    <h2>Bonjour %s,</h2>
-                    <p>Voici votre code de vérification pour vous connecter à Facture Freelance :</p>
-                    <div style="background-color: #f0f0f0; padding: 20px; text-align: center; font-size: 32px; font-weight: bold; letter-spacing: 5px; margin: 20px 0;">
-                        %s
-                    </div>
-                    <p>Ce code est valide pendant 5 minutes.</p>
-                    <p>Si vous n'avez pas demandé ce code, veuillez ignorer cet email.</p>
-                    <br>
-                    <p>Cordialement,<br>L'équipe Facture Freelance</p>
-                </body>
-                </html>
-                """, firstName, otp);
-    }
+    /**
+     * The reminder's status is updated once the email is delivered or given up on.
+     */
+    @Transactional
+    public void sendReminderEmail(Long userId, String to, String clientName, String invoiceNumber, int daysOverdue,
+                                  Long reminderId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("clientName", clientName);
+        data.put("invoiceNumber", invoiceNumber);
+        data.put("daysOverdue", daysOverdue);
+        EmailTemplateService.RenderedEmail custom = emailTemplates.render(userId, EmailTemplate.Kind.REMINDER, data);
 
-    private String buildInvoiceEmailBody(String clientName, String invoiceNumber) {
-        return String.format("""
-                <html>
-                <body style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto;">
-                    <h2>Bonjour %s,</h2>
-                    <p>Veuillez trouver ci-joint la facture <strong>%s</strong>.</p>
-                    <p>Merci de procéder au règlement dans les délais convenus.</p>
-                    <br>
-                    <p>Cordialement</p>
-                </body>
-                </html>
-                """, clientName, invoiceNumber);
+        String subject = custom != null ? custom.subject() : String.format("Relance - Facture %s en retard", invoiceNumber);
+        String body = custom != null ? custom.body() : Templates.reminder(clientName, invoiceNumber, daysOverdue).render();
+        queue(to, subject, body, null, null, null, reminderId, OutboxEmail.Priority.BULK);
+        logger.debugf("Reminder email queued for: %s", to);
     }
 
-    private String buildReminderEmailBody(String clientName, String invoiceNumber, int daysOverdue) {
-        return String.format("""
-                <html>
-                <body style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto;">
-                    <h2>Bonjour %s,</h2>
-                    <p>Nous constatons que la facture <strong>%s</strong> est en retard de <strong>%d jour(s)</strong>.</p>
-                    <p>Merci de procéder au règlement dans les plus brefs délais.</p>
-                    <p>Si vous avez déjà effectué le paiement, veuillez ignorer ce message.</p>
-                    <br>
-                    <p>Cordialement</p>
-                </body>
-                </html>
-                """, clientName, invoiceNumber, daysOverdue);
+    private void queue(String to, String subject, String body, String attachmentName, String attachmentContentType,
+                       byte[] attachment, Long reminderId, OutboxEmail.Priority priority) {
+        OutboxEmail email = new OutboxEmail();
+        email.recipient = to;
+        email.subject = subject;
+        email.htmlBody = body;
+        email.attachmentName = attachmentName;
+        email.attachmentContentType = attachmentContentType;
+        email.attachment = attachment;
+        email.reminderId = reminderId;
+        email.priority = priority;
+        email.persist();
+        emailQueued.fire(new OutboxEmailQueued(email.id, priority));
     }
 }
@@ -0,0 +1,9 @@
+package com.facture.service;
+
+import com.facture.entity.EmailTemplate;
+
+/**
+ * Fired when a user's email template is saved or removed; observed after commit to evict the compiled copy.
+ */
+public record EmailTemplateChanged(Long userId, EmailTemplate.Kind kind) {
+}
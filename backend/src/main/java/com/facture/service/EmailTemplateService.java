@@ -0,0 +1,255 @@
+package com.facture.service;
+
+import com.facture.dto.EmailTemplateDto;
+import com.facture.entity.EmailTemplate;
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.Expression;
+import io.quarkus.qute.HtmlEscaper;
+import io.quarkus.qute.IfSectionHelper;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.TemplateException;
+import io.quarkus.qute.ValueResolvers;
+import io.quarkus.qute.Variant;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users' own invoice and reminder emails. A template is parsed and rendered against sample data before it is
+ * saved, then compiled once on first use and cached, together with the absence of a template, so sending a batch
+ * of reminders costs neither a parse nor a query per email. An edit evicts the cached copy after commit; other
+ * nodes pick it up once their copy is older than the cache TTL.
+ * <p>
+ * Templates are parsed by an engine of their own that only knows {@code {#if}} sections and map lookups, and every
+ * expression must be one of the kind's variables: no loops, includes, method calls or namespaces (such as
+ * {@code inject:}), so a template can neither reach application beans nor multiply its output. The rendered email is
+ * capped in length as well, and the subject is checked against the widest values the variables can hold so that it
+ * always fits its outbox column.
+ */
+@ApplicationScoped
+public class EmailTemplateService {
+
+    private static final Logger logger = Logger.getLogger(EmailTemplateService.class);
+    private static final Variant SUBJECT_VARIANT = Variant.forContentType(Variant.TEXT_PLAIN);
+    private static final Variant BODY_VARIANT = Variant.forContentType(Variant.TEXT_HTML);
+    private static final Map<String, Object> SAMPLE_DATA = Map.of(
+            "clientName", "Client",
+            "invoiceNumber", "FAC-0001",
+            "daysOverdue", 1);
+    // Widest values the variables can take: names and numbers are varchar(255) columns
+    private static final Map<String, Object> WIDEST_DATA = Map.of(
+            "clientName", "x".repeat(255),
+            "invoiceNumber", "x".repeat(255),
+            "daysOverdue", Integer.MIN_VALUE);
+    // Length of email_outbox.subject
+    private static final int MAX_SUBJECT_LENGTH = 500;
+
+    @ConfigProperty(name = "email.template.cache.max-entries", defaultValue = "1000")
+    int maxEntries;
+
+    @ConfigProperty(name = "email.template.cache.ttl", defaultValue = "10M")
+    Duration ttl;
+
+    @ConfigProperty(name = "email.template.max-rendered-length", defaultValue = "100000")
+    int maxRenderedLength;
+
+    private final Engine engine = Engine.builder()
+            .addSectionHelper(new IfSectionHelper.Factory())
+            .addValueResolver(ValueResolvers.mapResolver())
+            .addResultMapper(new HtmlEscaper(List.of(Variant.TEXT_HTML)))
+            .removeStandaloneLines(true)
+            .build();
+
+    @Inject
+    Event<EmailTemplateChanged> templateChanged;
+
+    // Access-ordered for LRU eviction, guarded by its own monitor
+    private final LinkedHashMap<CacheKey, CachedTemplate> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedTemplate> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    // Bumped by every eviction, so a load that raced with an edit is not cached
+    private long evictions;
+
+    public EmailTemplateDto getTemplate(Long userId, EmailTemplate.Kind kind) {
+        EmailTemplate template = EmailTemplate.findByUserIdAndKind(userId, kind);
+        if (template == null) {
+            throw new NotFoundException("Email template not found");
+        }
+        return EmailTemplateDto.fromEntity(template);
+    }
+
+    /**
+     * Throws IllegalArgumentException if the subject or body does not parse or render, uses anything but the kind's
+     * variables and {#if} sections, renders a body longer than the configured maximum, or a subject that may not
+     * fit the outbox.
+     */
+    @Transactional
+    public EmailTemplateDto updateTemplate(Long userId, EmailTemplate.Kind kind, EmailTemplateDto request) {
+        compile(kind, request.subject, request.body);
+
+        EmailTemplate template = EmailTemplate.findByUserIdAndKind(userId, kind);
+        if (template == null) {
+            template = new EmailTemplate();
+            template.userId = userId;
+            template.kind = kind;
+        }
+        template.subject = request.subject;
+        template.body = request.body;
+        template.updatedAt = LocalDateTime.now();
+        template.persist();
+        templateChanged.fire(new EmailTemplateChanged(userId, kind));
+        return EmailTemplateDto.fromEntity(template);
+    }
+
+    @Transactional
+    public void deleteTemplate(Long userId, EmailTemplate.Kind kind) {
+        if (EmailTemplate.deleteByUserIdAndKind(userId, kind) == 0) {
+            throw new NotFoundException("Email template not found");
+        }
+        templateChanged.fire(new EmailTemplateChanged(userId, kind));
+    }
+
+    /**
+     * The email rendered from the user's template, or null to use the built-in one (no template of this kind,
+     * or it failed to render with this data).
+     */
+    public RenderedEmail render(Long userId, EmailTemplate.Kind kind, Map<String, Object> data) {
+        CompiledTemplate compiled = compiled(userId, kind);
+        if (compiled == null) {
+            return null;
+        }
+        RenderedEmail rendered;
+        try {
+            rendered = compiled.render(data);
+        } catch (TemplateException e) {
+            logger.warnf("Email template %s of user %d failed to render, using the default: %s", kind, userId, e.getMessage());
+            return null;
+        }
+        if (rendered.body().length() > maxRenderedLength) {
+            logger.warnf("Email template %s of user %d rendered %d characters, more than %d, using the default",
+                    kind, userId, rendered.body().length(), maxRenderedLength);
+            return null;
+        }
+        // Only {#if} branches the widest sample did not take can get here
+        if (rendered.subject().length() > MAX_SUBJECT_LENGTH) {
+            logger.warnf("Email template %s of user %d rendered a %d-character subject, more than %d, using the default",
+                    kind, userId, rendered.subject().length(), MAX_SUBJECT_LENGTH);
+            return null;
+        }
+        return rendered;
+    }
+
+    void onTemplateChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) EmailTemplateChanged event) {
+        synchronized (cache) {
+            cache.remove(new CacheKey(event.userId(), event.kind()));
+            evictions++;
+        }
+    }
+
+    private CompiledTemplate compiled(Long userId, EmailTemplate.Kind kind) {
+        CacheKey key = new CacheKey(userId, kind);
+        long now = System.nanoTime();
+        long evictionsBefore;
+        synchronized (cache) {
+            CachedTemplate cached = cache.get(key);
+            if (cached != null && now - cached.loadedAt() < ttl.toNanos()) {
+                return cached.template();
+            }
+            evictionsBefore = evictions;
+        }
+
+        EmailTemplate template = EmailTemplate.findByUserIdAndKind(userId, kind);
+        CompiledTemplate compiled = null;
+        if (template != null) {
+            try {
+                compiled = compile(kind, template.subject, template.body);
+            } catch (IllegalArgumentException e) {
+                logger.warnf("Email template %s of user %d no longer compiles, using the default: %s", kind, userId, e.getMessage());
+            }
+        }
+
+        synchronized (cache) {
+            if (evictions == evictionsBefore) {
+                cache.put(key, new CachedTemplate(compiled, now));
+            }
+        }
+        return compiled;
+    }
+
+    private CompiledTemplate compile(EmailTemplate.Kind kind, String subject, String body) {
+        Map<String, Object> sample = new HashMap<>();
+        Map<String, Object> widest = new HashMap<>();
+        for (String variable : kind.variables()) {
+            sample.put(variable, SAMPLE_DATA.get(variable));
+            widest.put(variable, WIDEST_DATA.get(variable));
+        }
+        CompiledTemplate compiled;
+        try {
+            // Sections other than {#if} are unknown to the engine and fail to parse
+            compiled = new CompiledTemplate(engine.parse(subject, SUBJECT_VARIANT), engine.parse(body, BODY_VARIANT));
+            checkExpressions(kind, compiled.subject());
+            checkExpressions(kind, compiled.body());
+            RenderedEmail rendered = compiled.render(sample);
+            if (rendered.body().length() > maxRenderedLength) {
+                throw invalid("the body renders longer than " + maxRenderedLength + " characters");
+            }
+            if (compiled.render(widest).subject().length() > MAX_SUBJECT_LENGTH) {
+                throw invalid("the subject may render longer than " + MAX_SUBJECT_LENGTH + " characters");
+            }
+        } catch (TemplateException e) {
+            throw invalid(e.getMessage() != null ? e.getMessage() : "");
+        }
+        return compiled;
+    }
+
+    // Plain variables of the kind only; literals are allowed as {#if} operands
+    private static void checkExpressions(EmailTemplate.Kind kind, Template template) {
+        for (Expression expression : template.getExpressions()) {
+            if (expression.isLiteral()) {
+                continue;
+            }
+            List<Expression.Part> parts = expression.getParts();
+            if (expression.hasNamespace() || parts.size() != 1 || parts.get(0).isVirtualMethod()
+                    || !kind.variables().contains(parts.get(0).getName())) {
+                throw invalid("{" + expression.toOriginalString() + "} is not allowed, use one of " + kind.variables());
+            }
+        }
+    }
+
+    // The message ends up in a hand-built JSON error body: no quotes, backslashes or line breaks
+    private static IllegalArgumentException invalid(String detail) {
+        return new IllegalArgumentException("Invalid email template: " + detail.replaceAll("[\"\\\\\\s]+", " ").strip());
+    }
+
+    public record RenderedEmail(String subject, String body) {
+    }
+
+    private record CompiledTemplate(Template subject, Template body) {
+
+        RenderedEmail render(Map<String, Object> data) {
+            return new RenderedEmail(subject.render(data).replaceAll("[\\r\\n]+", " ").strip(), body.render(data));
+        }
+    }
+
+    private record CacheKey(Long userId, EmailTemplate.Kind kind) {
+    }
+
+    private record CachedTemplate(CompiledTemplate template, long loadedAt) {
+    }
+}
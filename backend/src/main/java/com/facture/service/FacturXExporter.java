@@ -0,0 +1,17 @@
+package com.facture.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.mustangproject.ZUGFeRD.ZUGFeRDExporterFromA1;
+
+/**
+ * Mustang exporter that works on a document still open in memory.
+ * The stock exporter only accepts serialized input, which forces the visual PDF to be written out,
+ * run through the PDF/A-1 preflight parser and parsed a second time before the Factur-X conversion.
+ */
+class FacturXExporter extends ZUGFeRDExporterFromA1 {
+
+    FacturXExporter load(PDDocument document) {
+        this.doc = document;
+        return this;
+    }
+}
@@ -0,0 +1,10 @@
+package com.facture.service;
+
+import com.facture.entity.InvoiceStatus;
+
+/**
+ * Fired by {@link InvoiceService} whenever an invoice is created or modified. Observers that need the
+ * committed state should use {@code @Observes(during = TransactionPhase.AFTER_SUCCESS)}.
+ */
+public record InvoiceChangedEvent(Long userId, Long invoiceId, InvoiceStatus status) {
+}
@@ -0,0 +1,277 @@
+package com.facture.service;
+
+import com.facture.dto.ExportProgressDto;
+import com.facture.entity.Invoice;
+import com.facture.entity.InvoiceStatus;
+import com.facture.util.FileNames;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds ZIP archives of Factur-X PDFs or bare Factur-X XML. Documents are rendered on a bounded worker pool and
+ * written to the archive in completion order, with at most a couple of documents per worker held in memory at any time.
+ * The pool is shared by all running exports and kept apart from {@link PdfRenderExecutor}, whose default size it
+ * halves, so a large export cannot take every core from interactive downloads.
+ */
+@ApplicationScoped
+public class InvoiceExportService {
+
+    private static final Logger logger = Logger.getLogger(InvoiceExportService.class);
+    private static final String MANIFEST_ENTRY = "manifest.json";
+    private static final long PROGRESS_RETENTION_MINUTES = 15;
+
+    @ConfigProperty(name = "invoice.export.workers", defaultValue = "0")
+    int configuredWorkers;
+
+    @Inject
+    PdfService pdfService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    public enum ExportFormat {
+        PDF("_Factur-X.pdf"),
+        FACTURX_XML("_factur-x.xml");
+
+        final String entrySuffix;
+
+        ExportFormat(String entrySuffix) {
+            this.entrySuffix = entrySuffix;
+        }
+    }
+
+    private final Map<String, ExportProgress> exports = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private int workers;
+
+    @PostConstruct
+    void init() {
+        workers = configuredWorkers > 0 ? configuredWorkers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "invoice-export-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.infof("Invoice export pool started with %d workers", workers);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public ExportProgress prepareExport(Long userId, LocalDate from, LocalDate to, InvoiceStatus status, ExportFormat format) {
+        purgeStaleExports();
+
+        List<Long> invoiceIds = Invoice.findIdsByUserIdAndPeriod(userId, from, to, status);
+        ExportProgress progress = new ExportProgress(UUID.randomUUID().toString(), userId, invoiceIds, format);
+        exports.put(progress.exportId, progress);
+
+        logger.infof("Invoice export %s prepared for user %d: %d invoices", progress.exportId, userId, invoiceIds.size());
+        return progress;
+    }
+
+    public void writeExport(ExportProgress progress, OutputStream outputStream) throws IOException {
+        progress.started = true;
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        // Mustang writes uncompressed PDFs and XML compresses well, so cheap deflate still pays off
+        zip.setLevel(Deflater.BEST_SPEED);
+
+        ExecutorCompletionService<RenderedDocument> completion = new ExecutorCompletionService<>(executor);
+        Iterator<Long> pending = progress.invoiceIds.iterator();
+        int maxInFlight = workers * 2;
+        int inFlight = 0;
+        List<Map<String, Object>> failures = new ArrayList<>();
+
+        try {
+            while (inFlight < maxInFlight && pending.hasNext()) {
+                submit(completion, pending.next(), progress.format);
+                inFlight++;
+            }
+
+            while (inFlight > 0) {
+                RenderedDocument rendered = take(completion);
+                inFlight--;
+
+                if (rendered.error == null) {
+                    zip.putNextEntry(new ZipEntry(FileNames.safe(rendered.invoiceNumber) + progress.format.entrySuffix));
+                    zip.write(rendered.content);
+                    zip.closeEntry();
+                    progress.completed.incrementAndGet();
+                } else {
+                    Map<String, Object> failure = new LinkedHashMap<>();
+                    failure.put("invoiceId", rendered.invoiceId);
+                    failure.put("invoiceNumber", rendered.invoiceNumber);
+                    failure.put("error", rendered.error);
+                    failures.add(failure);
+                    progress.failed.incrementAndGet();
+                }
+
+                if (pending.hasNext()) {
+                    submit(completion, pending.next(), progress.format);
+                    inFlight++;
+                }
+            }
+
+            Map<String, Object> manifest = new LinkedHashMap<>();
+            manifest.put("exportId", progress.exportId);
+            manifest.put("total", progress.invoiceIds.size());
+            manifest.put("exported", progress.completed.get());
+            manifest.put("failed", failures);
+            zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+            zip.write(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+            zip.closeEntry();
+            zip.finish();
+            zip.flush();
+
+            logger.infof("Invoice export %s finished: %d exported, %d failed",
+                    progress.exportId, progress.completed.get(), progress.failed.get());
+        } finally {
+            progress.finishedAt = Instant.now();
+        }
+    }
+
+    public ExportProgressDto getProgress(Long userId, String exportId) {
+        ExportProgress progress = exports.get(exportId);
+        if (progress == null || !progress.userId.equals(userId)) {
+            throw new NotFoundException("Export not found");
+        }
+        return progress.toDto();
+    }
+
+    private void submit(ExecutorCompletionService<RenderedDocument> completion, Long invoiceId, ExportFormat format) {
+        completion.submit(() -> render(invoiceId, format));
+    }
+
+    private RenderedDocument take(ExecutorCompletionService<RenderedDocument> completion) throws IOException {
+        try {
+            Future<RenderedDocument> future = completion.take();
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Invoice export interrupted", e);
+        } catch (ExecutionException e) {
+            // render() never throws, this only happens if the worker itself died
+            throw new IOException("Invoice export worker failed", e.getCause());
+        }
+    }
+
+    private RenderedDocument render(Long invoiceId, ExportFormat format) {
+        Invoice invoice;
+        try {
+            // Only the read holds a connection; the associations it fetches are all the renderer needs once detached
+            invoice = QuarkusTransaction.requiringNew().call(() -> Invoice.findByIdWithDocumentData(invoiceId));
+        } catch (Exception e) {
+            logger.warnf("Skipping invoice %d in export: %s", invoiceId, e.getMessage());
+            return RenderedDocument.failure(invoiceId, null, e.getMessage());
+        }
+        if (invoice == null) {
+            return RenderedDocument.failure(invoiceId, null, "Invoice not found");
+        }
+
+        try {
+            byte[] content = format == ExportFormat.PDF
+                    ? pdfService.getFacturXPdf(invoice)
+                    : pdfService.generateFacturXXml(invoice);
+            return RenderedDocument.success(invoiceId, invoice.invoiceNumber, content);
+        } catch (Exception e) {
+            logger.warnf("Skipping invoice %d in export: %s", invoiceId, e.getMessage());
+            return RenderedDocument.failure(invoiceId, invoice.invoiceNumber, e.getMessage());
+        }
+    }
+
+    private void purgeStaleExports() {
+        Instant threshold = Instant.now().minus(PROGRESS_RETENTION_MINUTES, ChronoUnit.MINUTES);
+        // Exports whose stream was never opened are dropped by their creation time
+        exports.values().removeIf(progress -> progress.finishedAt != null
+                ? progress.finishedAt.isBefore(threshold)
+                : !progress.started && progress.createdAt.isBefore(threshold));
+    }
+
+    public static class ExportProgress {
+
+        public final String exportId;
+        final Long userId;
+        final List<Long> invoiceIds;
+        final ExportFormat format;
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final Instant createdAt = Instant.now();
+        volatile boolean started;
+        volatile Instant finishedAt;
+
+        ExportProgress(String exportId, Long userId, List<Long> invoiceIds, ExportFormat format) {
+            this.exportId = exportId;
+            this.userId = userId;
+            this.invoiceIds = invoiceIds;
+            this.format = format;
+        }
+
+        public int getTotal() {
+            return invoiceIds.size();
+        }
+
+        ExportProgressDto toDto() {
+            ExportProgressDto dto = new ExportProgressDto();
+            dto.exportId = exportId;
+            dto.total = invoiceIds.size();
+            dto.completed = completed.get();
+            dto.failed = failed.get();
+            dto.finished = finishedAt != null;
+            return dto;
+        }
+    }
+
+    private static class RenderedDocument {
+
+        final Long invoiceId;
+        final String invoiceNumber;
+        final byte[] content;
+        final String error;
+
+        private RenderedDocument(Long invoiceId, String invoiceNumber, byte[] content, String error) {
+            this.invoiceId = invoiceId;
+            this.invoiceNumber = invoiceNumber;
+            this.content = content;
+            this.error = error;
+        }
+
+        static RenderedDocument success(Long invoiceId, String invoiceNumber, byte[] content) {
+            return new RenderedDocument(invoiceId, invoiceNumber, content, null);
+        }
+
+        static RenderedDocument failure(Long invoiceId, String invoiceNumber, String error) {
+            return new RenderedDocument(invoiceId, invoiceNumber, null, error);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.facture.service;
+
+import com.facture.dto.ImportInvoiceRequest;
+import com.facture.dto.InvoiceItemDto;
+import com.facture.entity.InvoiceStatus;
+import com.facture.util.CsvReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the invoices of a bulk import one at a time, so the input is never held in memory.
+ * <p>
+ * JSON lines carry one {@link ImportInvoiceRequest} per line. CSV carries one invoice line per record, with a
+ * header naming the columns; consecutive records sharing a {@code reference} (or, without that column, an
+ * {@code invoice_number}) form a single invoice.
+ */
+public class InvoiceImportReader {
+
+    public enum Format {
+        JSON_LINES,
+        CSV
+    }
+
+    /**
+     * An invoice read from the input, or the reason it could not be read.
+     */
+    public record ImportRow(long line, ImportInvoiceRequest request, String error) {
+    }
+
+    private static final String REFERENCE = "reference";
+    private static final String INVOICE_NUMBER = "invoice_number";
+    private static final List<String> REQUIRED_COLUMNS = List.of("issue_date", "due_date", "description", "quantity", "unit_price");
+    private static final List<String> CLIENT_COLUMNS = List.of("client_id", "client_siret", "client_email");
+
+    private final Format format;
+    private final BufferedReader reader;
+    private final ObjectReader jsonReader;
+    private CsvReader csv;
+    private Map<String, Integer> columns;
+    private List<String> pendingRecord;
+    private long pendingLine;
+    private long line;
+
+    public InvoiceImportReader(Format format, Reader input, ObjectMapper objectMapper) throws IOException {
+        this.format = format;
+        this.reader = new BufferedReader(input);
+        this.jsonReader = objectMapper.readerFor(ImportInvoiceRequest.class);
+        if (format == Format.CSV) {
+            readHeader();
+        }
+    }
+
+    /**
+     * Next invoice, or null at the end of the input. Throws IllegalArgumentException only for input that cannot
+     * be read at all; a bad invoice comes back as a row with an error.
+     */
+    public ImportRow next() throws IOException {
+        return format == Format.CSV ? nextCsv() : nextJsonLine();
+    }
+
+    private ImportRow nextJsonLine() throws IOException {
+        String value;
+        do {
+            value = reader.readLine();
+            line++;
+            if (value == null) {
+                return null;
+            }
+        } while (value.isBlank());
+
+        try {
+            return new ImportRow(line, jsonReader.readValue(value), null);
+        } catch (JsonProcessingException e) {
+            return new ImportRow(line, null, "Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private void readHeader() throws IOException {
+        // Spreadsheets with a French locale export semicolon separated files
+        reader.mark(8192);
+        String firstLine = reader.readLine();
+        reader.reset();
+        if (firstLine == null) {
+            throw new IllegalArgumentException("Empty CSV input");
+        }
+        char separator = firstLine.indexOf(';') >= 0 && firstLine.indexOf(',') < 0 ? ';' : ',';
+        if (!firstLine.isEmpty() && firstLine.charAt(0) == '\uFEFF') {
+            reader.read();
+        }
+
+        csv = new CsvReader(reader, separator);
+        List<String> header = csv.next();
+        columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String column : REQUIRED_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("Missing CSV column: " + column);
+            }
+        }
+        if (CLIENT_COLUMNS.stream().noneMatch(columns::containsKey)) {
+            throw new IllegalArgumentException("Missing CSV column: one of " + String.join(", ", CLIENT_COLUMNS));
+        }
+        pendingRecord = csv.next();
+        pendingLine = csv.recordLine();
+    }
+
+    private ImportRow nextCsv() throws IOException {
+        if (pendingRecord == null) {
+            return null;
+        }
+
+        List<String> first = pendingRecord;
+        long firstLine = pendingLine;
+        String reference = reference(first);
+
+        ImportInvoiceRequest request = new ImportInvoiceRequest();
+        request.items = new ArrayList<>();
+        String error = null;
+        try {
+            readInvoice(first, request);
+        } catch (RuntimeException e) {
+            error = "Line " + firstLine + ": " + e.getMessage();
+        }
+
+        while (true) {
+            pendingRecord = csv.next();
+            pendingLine = csv.recordLine();
+            if (pendingRecord == null || reference == null || !reference.equals(reference(pendingRecord))) {
+                break;
+            }
+            if (error == null) {
+                try {
+                    request.items.add(readItem(pendingRecord));
+                } catch (RuntimeException e) {
+                    error = "Line " + pendingLine + ": " + e.getMessage();
+                }
+            }
+        }
+
+        return error == null ? new ImportRow(firstLine, request, null) : new ImportRow(firstLine, null, error);
+    }
+
+    private String reference(List<String> record) {
+        return columns.containsKey(REFERENCE) ? value(record, REFERENCE) : value(record, INVOICE_NUMBER);
+    }
+
+    private void readInvoice(List<String> record, ImportInvoiceRequest request) {
+        request.invoiceNumber = value(record, INVOICE_NUMBER);
+        String clientId = value(record, "client_id");
+        try {
+            request.clientId = clientId != null ? Long.valueOf(clientId) : null;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid client_id '" + clientId + "'");
+        }
+        request.clientSiret = value(record, "client_siret");
+        request.clientEmail = value(record, "client_email");
+        request.issueDate = date(record, "issue_date");
+        request.dueDate = date(record, "due_date");
+        request.paidDate = date(record, "paid_date");
+        String status = value(record, "status");
+        try {
+            request.status = status != null ? InvoiceStatus.valueOf(status.toUpperCase(Locale.ROOT)) : null;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid status '" + status + "'");
+        }
+        request.taxRate = decimal(record, "tax_rate");
+        request.notes = value(record, "notes");
+        request.paymentTerms = value(record, "payment_terms");
+        request.items.add(readItem(record));
+    }
+
+    private InvoiceItemDto readItem(List<String> record) {
+        InvoiceItemDto item = new InvoiceItemDto();
+        item.description = value(record, "description");
+        item.quantity = decimal(record, "quantity");
+        item.unitPrice = decimal(record, "unit_price");
+        item.taxRate = decimal(record, "item_tax_rate");
+        return item;
+    }
+
+    private String value(List<String> record, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private LocalDate date(List<String> record, String column) {
+        String value = value(record, column);
+        try {
+            return value != null ? LocalDate.parse(value) : null;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid " + column + " '" + value + "', expected YYYY-MM-DD");
+        }
+    }
+
+    private BigDecimal decimal(List<String> record, String column) {
+        String value = value(record, column);
+        try {
+            return value != null ? new BigDecimal(value.replace(',', '.')) : null;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + " '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.facture.service;
+
+import com.facture.dto.ImportInvoiceRequest;
+import com.facture.dto.ImportReportDto;
+import com.facture.entity.Client;
+import com.facture.entity.Invoice;
+import com.facture.entity.InvoiceItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk invoice import for migrations from other tools.
+ * <p>
+ * The input is read and validated one invoice at a time and written in chunks, each in its own transaction.
+ * Invoices and items are inserted with plain JDBC batches: identifiers are drawn from the identity sequences
+ * up front, which IDENTITY generation in Hibernate would otherwise force to one round trip per row.
+ * A chunk that fails is replayed one invoice per transaction so that only the faulty rows are reported.
+ * <p>
+ * Invoices keep the number they had in the previous tool, which must be unique for the user. Only when the caller
+ * asks for it does an invoice without a number get the next one from {@link InvoiceNumberAllocator}; imported
+ * numbers in the allocator's own format move its counters past them.
+ */
+@ApplicationScoped
+public class InvoiceImportService {
+
+    private static final Logger logger = Logger.getLogger(InvoiceImportService.class);
+
+    private static final String INSERT_INVOICE = "insert into invoices (id, user_id, client_id, invoice_number, status,"
+            + " issue_date, due_date, paid_date, subtotal, tax_rate, tax_amount, total, currency, notes, payment_terms,"
+            + " created_at, updated_at, change_seq) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ITEM = "insert into invoice_items (id, invoice_id, description, quantity,"
+            + " unit_price, tax_rate, amount, order_index) values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @ConfigProperty(name = "invoice.import.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @Inject
+    InvoiceNumberAllocator invoiceNumberAllocator;
+
+    @Inject
+    TenantVersionService tenantVersions;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    Validator validator;
+
+    public ImportReportDto importInvoices(Long userId, InputStream input, InvoiceImportReader.Format format,
+                                          boolean allocateMissingNumbers) throws IOException {
+        long start = System.nanoTime();
+        InvoiceImportReader reader = new InvoiceImportReader(format,
+                new InputStreamReader(input, StandardCharsets.UTF_8), objectMapper);
+        ClientLookup clients = new ClientLookup(Client.findByUserId(userId));
+        Set<String> numbers = new HashSet<>();
+
+        ImportReportDto report = new ImportReportDto();
+        List<PendingInvoice> chunk = new ArrayList<>(chunkSize);
+        InvoiceImportReader.ImportRow row;
+        while ((row = reader.next()) != null) {
+            report.total++;
+            String error = row.error() != null ? row.error() : prepare(row.request(), clients, numbers, allocateMissingNumbers);
+            if (error != null) {
+                report.errors.add(new ImportReportDto.RowError(row.line(), error));
+                continue;
+            }
+
+            chunk.add(new PendingInvoice(row.line(), toEntity(row.request(), clients)));
+            if (chunk.size() >= chunkSize) {
+                writeChunk(userId, chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(userId, chunk, report);
+        }
+
+        report.failed = report.errors.size();
+        report.durationMs = (System.nanoTime() - start) / 1_000_000;
+        logger.infof("Imported %d of %d invoices for user %d in %d ms (%.0f invoices/s)", report.imported, report.total,
+                userId, report.durationMs, report.imported * 1000.0 / Math.max(report.durationMs, 1));
+        return report;
+    }
+
+    // Resolves the client and runs the same validation as POST /api/invoices, returns the error if any
+    private String prepare(ImportInvoiceRequest request, ClientLookup clients, Set<String> numbers,
+                           boolean allocateMissingNumbers) {
+        if (request.invoiceNumber != null && !request.invoiceNumber.isBlank()) {
+            request.invoiceNumber = request.invoiceNumber.trim();
+        } else if (allocateMissingNumbers) {
+            request.invoiceNumber = null;
+        } else {
+            return "Invoice number is required (or import with allocateNumbers=true)";
+        }
+
+        if (request.clientId == null || !clients.ids.contains(request.clientId)) {
+            Long clientId = clients.find(request);
+            if (clientId == null) {
+                return "Client not found";
+            }
+            request.clientId = clientId;
+        }
+
+        Set<ConstraintViolation<ImportInvoiceRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (request.invoiceNumber != null && !numbers.add(request.invoiceNumber)) {
+            return "Duplicate invoice number " + request.invoiceNumber + " in the import";
+        }
+        return null;
+    }
+
+    private static Invoice toEntity(ImportInvoiceRequest request, ClientLookup clients) {
+        Invoice invoice = new Invoice();
+        invoice.client = clients.references.get(request.clientId);
+        invoice.invoiceNumber = request.invoiceNumber;
+        InvoiceService.updateInvoiceFromRequest(invoice, request);
+        invoice.paidDate = request.paidDate;
+        request.items.forEach(itemDto -> {
+            InvoiceItem item = itemDto.toEntity();
+            item.calculateAmount();
+            invoice.addItem(item);
+        });
+        invoice.calculateTotals();
+        return invoice;
+    }
+
+    private void writeChunk(Long userId, List<PendingInvoice> chunk, ImportReportDto report) {
+        rejectExistingNumbers(userId, chunk, report);
+        writeRows(userId, chunk, report);
+    }
+
+    // Reported as row errors; the (user, number) unique constraint still guards against concurrent creates
+    private static void rejectExistingNumbers(Long userId, List<PendingInvoice> chunk, ImportReportDto report) {
+        List<String> numbers = chunk.stream()
+                .map(pending -> pending.invoice.invoiceNumber)
+                .filter(number -> number != null)
+                .toList();
+        if (numbers.isEmpty()) {
+            return;
+        }
+        Set<String> existing = new HashSet<>(Invoice.findExistingNumbers(userId, numbers));
+        chunk.removeIf(pending -> {
+            if (pending.invoice.invoiceNumber == null || !existing.contains(pending.invoice.invoiceNumber)) {
+                return false;
+            }
+            report.errors.add(new ImportReportDto.RowError(pending.line,
+                    "Invoice number " + pending.invoice.invoiceNumber + " already exists"));
+            return true;
+        });
+    }
+
+    private void writeRows(Long userId, List<PendingInvoice> chunk, ImportReportDto report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            QuarkusTransaction.requiringNew().run(() -> insertChunk(userId, chunk));
+            report.imported += chunk.size();
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                report.errors.add(new ImportReportDto.RowError(chunk.get(0).line, rootMessage(e)));
+                return;
+            }
+            logger.warnf("Import chunk of %d invoices for user %d failed, retrying one by one: %s",
+                    chunk.size(), userId, rootMessage(e));
+            for (PendingInvoice pending : chunk) {
+                writeRows(userId, List.of(pending), report);
+            }
+        }
+    }
+
+    private void insertChunk(Long userId, List<PendingInvoice> chunk) {
+        // Numbers first: a block refill must not wait for a second pooled connection
+        List<String> imported = new ArrayList<>();
+        for (PendingInvoice pending : chunk) {
+            if (pending.invoice.invoiceNumber != null) {
+                imported.add(pending.invoice.invoiceNumber);
+            }
+        }
+        invoiceNumberAllocator.skipPast(userId, imported);
+        for (PendingInvoice pending : chunk) {
+            if (pending.invoice.invoiceNumber == null) {
+                pending.invoice.invoiceNumber = invoiceNumberAllocator.next(userId);
+            }
+        }
+        long changeSeq = tenantVersions.bump(userId, null);
+
+        Session session = Invoice.getEntityManager().unwrap(Session.class);
+        session.doWork(connection -> insertChunk(connection, userId, chunk, changeSeq));
+    }
+
+    private static void insertChunk(Connection connection, Long userId, List<PendingInvoice> chunk, long changeSeq)
+            throws SQLException {
+        int itemCount = chunk.stream().mapToInt(pending -> pending.invoice.items.size()).sum();
+        long[] invoiceIds = nextIds(connection, "invoices", chunk.size());
+        long[] itemIds = nextIds(connection, "invoice_items", itemCount);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_INVOICE)) {
+            for (int i = 0; i < chunk.size(); i++) {
+                Invoice invoice = chunk.get(i).invoice;
+                invoice.id = invoiceIds[i];
+                statement.setLong(1, invoice.id);
+                statement.setLong(2, userId);
+                statement.setLong(3, invoice.client.id);
+                statement.setString(4, invoice.invoiceNumber);
+                statement.setString(5, invoice.status.name());
+                statement.setDate(6, Date.valueOf(invoice.issueDate));
+                statement.setDate(7, Date.valueOf(invoice.dueDate));
+                if (invoice.paidDate != null) {
+                    statement.setDate(8, Date.valueOf(invoice.paidDate));
+                } else {
+                    statement.setNull(8, Types.DATE);
+                }
+                statement.setBigDecimal(9, invoice.subtotal);
+                statement.setBigDecimal(10, invoice.taxRate);
+                statement.setBigDecimal(11, invoice.taxAmount);
+                statement.setBigDecimal(12, invoice.total);
+                statement.setString(13, invoice.currency);
+                statement.setString(14, invoice.notes);
+                statement.setString(15, invoice.paymentTerms);
+                statement.setTimestamp(16, now);
+                statement.setTimestamp(17, now);
+                statement.setLong(18, changeSeq);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_ITEM)) {
+            int next = 0;
+            for (PendingInvoice pending : chunk) {
+                for (InvoiceItem item : pending.invoice.items) {
+                    statement.setLong(1, itemIds[next++]);
+                    statement.setLong(2, pending.invoice.id);
+                    statement.setString(3, item.description);
+                    statement.setBigDecimal(4, item.quantity);
+                    statement.setBigDecimal(5, item.unitPrice);
+                    statement.setBigDecimal(6, item.taxRate);
+                    statement.setBigDecimal(7, item.amount);
+                    statement.setInt(8, item.orderIndex);
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    // Draws count values from the sequence behind the table's identity column in one round trip
+    private static long[] nextIds(Connection connection, String table, int count) throws SQLException {
+        long[] ids = new long[count];
+        if (count == 0) {
+            return ids;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select nextval(pg_get_serial_sequence(?, 'id')) from generate_series(1, ?)")) {
+            statement.setString(1, table);
+            statement.setInt(2, count);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                for (int i = 0; i < count && resultSet.next(); i++) {
+                    ids[i] = resultSet.getLong(1);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof SQLException sqlException && sqlException.getNextException() != null) {
+            cause = sqlException.getNextException();
+        }
+        return cause.getMessage();
+    }
+
+    private static class PendingInvoice {
+
+        final long line;
+        final Invoice invoice;
+
+        PendingInvoice(long line, Invoice invoice) {
+            this.line = line;
+            this.invoice = invoice;
+        }
+    }
+
+    // The user's clients, loaded once per import
+    private static class ClientLookup {
+
+        final Set<Long> ids = new HashSet<>();
+        final Map<Long, Client> references = new HashMap<>();
+        final Map<String, Long> bySiret = new HashMap<>();
+        final Map<String, Long> byEmail = new HashMap<>();
+
+        ClientLookup(List<Client> clients) {
+            for (Client client : clients) {
+                ids.add(client.id);
+                references.put(client.id, client);
+                if (client.siret != null && !client.siret.isBlank()) {
+                    bySiret.putIfAbsent(normalizeSiret(client.siret), client.id);
+                }
+                if (client.email != null) {
+                    byEmail.putIfAbsent(client.email.trim().toLowerCase(Locale.ROOT), client.id);
+                }
+            }
+        }
+
+        Long find(ImportInvoiceRequest request) {
+            if (request.clientSiret != null) {
+                Long id = bySiret.get(normalizeSiret(request.clientSiret));
+                if (id != null) {
+                    return id;
+                }
+            }
+            return request.clientEmail != null ? byEmail.get(request.clientEmail.trim().toLowerCase(Locale.ROOT)) : null;
+        }
+
+        private static String normalizeSiret(String siret) {
+            return siret.replaceAll("\\s", "");
+        }
+    }
+}
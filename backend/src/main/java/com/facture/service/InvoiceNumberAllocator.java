@@ -0,0 +1,252 @@
+package com.facture.service;
+
+import com.facture.entity.Invoice;
+import com.facture.entity.InvoiceNumberCounter;
+import com.facture.entity.User;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hands out invoice numbers (FACT-YYYY-MM-XXXXX) per user and per month from the {@link InvoiceNumberCounter} table.
+ * <p>
+ * With a block size of 1 (the default), each number is taken under the counter's row lock in the transaction that
+ * stores the invoice. A rollback gives the number back with the lock, so numbers are gap-free and in commit order on
+ * any number of nodes; the price is that one user's invoice creations are serialized.
+ * <p>
+ * A larger block size reserves numbers in blocks served from memory, so most invoices are numbered without a query.
+ * This is only for a single node: blocks of several nodes interleave (numbers stop following creation order), and the
+ * unused end of a block is given back on a graceful shutdown only, so a crash leaves a gap.
+ */
+@ApplicationScoped
+public class InvoiceNumberAllocator {
+
+    private static final Logger logger = Logger.getLogger(InvoiceNumberAllocator.class);
+    private static final String PREFIX = "FACT-";
+    private static final Pattern NUMBER = Pattern.compile("FACT-(\\d{4}-\\d{2})-(\\d{1,12})");
+
+    @ConfigProperty(name = "invoice.number.block-size", defaultValue = "1")
+    int blockSize;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    private final Map<BlockKey, NumberBlock> blocks = new ConcurrentHashMap<>();
+    private volatile String currentPeriod;
+
+    void onStart(@Observes StartupEvent event) {
+        if (blockSize > 1) {
+            logger.warnf("Invoice numbers are reserved in blocks of %d: only run a single instance, and expect gaps "
+                    + "after a crash", blockSize);
+        }
+    }
+
+    /**
+     * Must be called in the transaction that stores the invoice.
+     */
+    public String next(Long userId) {
+        String period = YearMonth.now().toString();
+        if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            throw new IllegalStateException("Invoice numbers are allocated in the transaction that stores the invoice");
+        }
+        return format(period, blockSize > 1 ? nextFromBlock(userId, period) : nextLocked(userId, period));
+    }
+
+    /**
+     * Moves the counters past imported numbers in the FACT-YYYY-MM-XXXXX format so that they are never handed out
+     * again. Blocks already reserved in memory are not affected: with a block size above 1, import before numbering
+     * new invoices of the same month.
+     */
+    public void skipPast(Long userId, Collection<String> numbers) {
+        Map<String, Long> highest = new HashMap<>();
+        for (String number : numbers) {
+            Matcher matcher = NUMBER.matcher(number);
+            if (matcher.matches()) {
+                highest.merge(matcher.group(1), Long.parseLong(matcher.group(2)), Math::max);
+            }
+        }
+        highest.forEach((period, value) -> InvoiceNumberCounter.advanceTo(userId, period,
+                Math.max(value, Invoice.findHighestSequenceNumber(userId, PREFIX + period + "-")) + 1));
+    }
+
+    // Held until the caller's transaction ends, which also returns the number on rollback
+    private long nextLocked(Long userId, String period) {
+        InvoiceNumberCounter counter = InvoiceNumberCounter.findForUpdate(userId, period);
+        if (counter == null) {
+            if (User.findById(userId) == null) {
+                throw new NotFoundException("User not found");
+            }
+            // Invoices numbered before the counter existed for this period
+            long first = Invoice.findHighestSequenceNumber(userId, PREFIX + period + "-") + 1;
+            InvoiceNumberCounter.createIfAbsent(userId, period, first);
+            counter = InvoiceNumberCounter.findForUpdate(userId, period);
+        }
+
+        long value = counter.nextValue;
+        counter.nextValue = value + 1;
+        return value;
+    }
+
+    private long nextFromBlock(Long userId, String period) {
+        if (!period.equals(currentPeriod)) {
+            dropPastPeriods(period);
+        }
+        NumberBlock block = blocks.computeIfAbsent(new BlockKey(userId, period), NumberBlock::new);
+
+        long value;
+        synchronized (block) {
+            if (!block.hasAvailable()) {
+                reserve(block);
+            }
+            value = block.take();
+        }
+
+        transactionRegistry.registerInterposedSynchronization(new ReleaseOnRollback(block, value));
+        return value;
+    }
+
+    // Blocks of past months are never served again: their unused numbers go back to the counter and they are dropped
+    private synchronized void dropPastPeriods(String period) {
+        if (period.equals(currentPeriod)) {
+            return;
+        }
+        Iterator<NumberBlock> iterator = blocks.values().iterator();
+        while (iterator.hasNext()) {
+            NumberBlock block = iterator.next();
+            if (!block.key.period().equals(period)) {
+                iterator.remove();
+                releaseRemainder(block);
+            }
+        }
+        currentPeriod = period;
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        for (NumberBlock block : blocks.values()) {
+            releaseRemainder(block);
+        }
+    }
+
+    private void releaseRemainder(NumberBlock block) {
+        synchronized (block) {
+            if (block.next >= block.end) {
+                return;
+            }
+            try {
+                QuarkusTransaction.requiringNew().run(() -> {
+                    InvoiceNumberCounter counter = InvoiceNumberCounter.findForUpdate(block.key.userId(), block.key.period());
+                    // Only possible if nobody reserved a later block in the meantime
+                    if (counter != null && counter.nextValue == block.end) {
+                        counter.nextValue = block.next;
+                    }
+                });
+                block.end = block.next;
+            } catch (Exception e) {
+                logger.warnf("Could not release invoice numbers %d-%d for user %d (%s): %s",
+                        block.next, block.end - 1, block.key.userId(), block.key.period(), e.getMessage());
+            }
+        }
+    }
+
+    private void reserve(NumberBlock block) {
+        BlockKey key = block.key;
+        long[] range;
+        try {
+            range = QuarkusTransaction.requiringNew().call(() -> reserveRange(key));
+        } catch (PersistenceException e) {
+            // Another instance created the counter row first, it exists now
+            range = QuarkusTransaction.requiringNew().call(() -> reserveRange(key));
+        }
+        block.next = range[0];
+        block.end = range[1];
+        logger.debugf("Reserved invoice numbers %d-%d for user %d (%s)", range[0], range[1] - 1, key.userId(), key.period());
+    }
+
+    private long[] reserveRange(BlockKey key) {
+        InvoiceNumberCounter counter = InvoiceNumberCounter.findForUpdate(key.userId(), key.period());
+        if (counter == null) {
+            User user = User.findById(key.userId());
+            if (user == null) {
+                throw new NotFoundException("User not found");
+            }
+            counter = new InvoiceNumberCounter();
+            counter.user = user;
+            counter.period = key.period();
+            // Invoices numbered before the counter existed for this period
+            counter.nextValue = Invoice.findHighestSequenceNumber(key.userId(), PREFIX + key.period() + "-") + 1;
+            counter.persist();
+            InvoiceNumberCounter.flush();
+        }
+
+        long start = counter.nextValue;
+        counter.nextValue = start + blockSize;
+        return new long[] {start, counter.nextValue};
+    }
+
+    private static String format(String period, long value) {
+        return String.format("%s%s-%05d", PREFIX, period, value);
+    }
+
+    private record BlockKey(Long userId, String period) {
+    }
+
+    private static class NumberBlock {
+
+        final BlockKey key;
+        // Rolled back numbers, served before the rest of the block
+        final TreeSet<Long> released = new TreeSet<>();
+        long next;
+        long end;
+
+        NumberBlock(BlockKey key) {
+            this.key = key;
+        }
+
+        boolean hasAvailable() {
+            return !released.isEmpty() || next < end;
+        }
+
+        long take() {
+            Long first = released.pollFirst();
+            return first != null ? first : next++;
+        }
+
+        synchronized void release(long value) {
+            released.add(value);
+        }
+    }
+
+    private record ReleaseOnRollback(NumberBlock block, long value) implements Synchronization {
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != Status.STATUS_COMMITTED) {
+                block.release(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.facture.service;
+
+import com.facture.entity.Invoice;
+import com.facture.entity.TenantVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves SENT invoices past their due date to OVERDUE with set-based updates, one chunk per transaction.
+ * <p>
+ * Every node runs the job; a chunk only proceeds while its transaction holds a PostgreSQL advisory lock, so nodes
+ * firing together do not sweep the same rows. The owners' tenant versions are bumped before their invoices are
+ * updated, in the same order as any other writer, so ETags and delta sync see the new status.
+ */
+@ApplicationScoped
+public class InvoiceOverdueSweeper {
+
+    private static final Logger logger = Logger.getLogger(InvoiceOverdueSweeper.class);
+    // Application-wide key of the advisory lock, any constant unused by other locks
+    private static final long ADVISORY_LOCK_KEY = 7_310_482_201L;
+
+    @ConfigProperty(name = "invoice.overdue.sweep.chunk-size", defaultValue = "1000")
+    int chunkSize;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Counter swept;
+    private Timer duration;
+
+    @PostConstruct
+    void init() {
+        swept = registry.counter("invoice.overdue.swept");
+        duration = registry.timer("invoice.overdue.sweep.duration");
+    }
+
+    @Scheduled(cron = "{invoice.overdue.sweep.cron}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweep() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        int total = 0;
+        int chunks = 0;
+
+        while (true) {
+            ChunkResult result = QuarkusTransaction.requiringNew().call(() -> sweepChunk(today));
+            if (result == null) {
+                logger.debug("Overdue sweep skipped, another node holds the sweep lock");
+                break;
+            }
+            total += result.updated;
+            chunks++;
+            if (result.candidates < chunkSize || result.updated == 0) {
+                break;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        duration.record(elapsed, TimeUnit.NANOSECONDS);
+        swept.increment(total);
+        logger.infof("Overdue sweep moved %d invoices to OVERDUE in %d chunks (%d ms)",
+                total, chunks, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    // Null when another node is sweeping
+    private ChunkResult sweepChunk(LocalDate today) {
+        Boolean locked = (Boolean) Invoice.getEntityManager()
+                .createNativeQuery("select pg_try_advisory_xact_lock(:key)")
+                .setParameter("key", ADVISORY_LOCK_KEY)
+                .getSingleResult();
+        if (!Boolean.TRUE.equals(locked)) {
+            return null;
+        }
+
+        List<Object[]> candidates = Invoice.findOverdueCandidates(today, chunkSize);
+        if (candidates.isEmpty()) {
+            return new ChunkResult(0, 0);
+        }
+
+        List<Long> ids = new ArrayList<>(candidates.size());
+        Set<Long> userIds = new TreeSet<>();
+        for (Object[] candidate : candidates) {
+            ids.add((Long) candidate[0]);
+            userIds.add((Long) candidate[1]);
+        }
+        TenantVersion.bumpAll(userIds);
+        return new ChunkResult(candidates.size(), Invoice.markOverdue(ids, today));
+    }
+
+    private record ChunkResult(int candidates, int updated) {
+    }
+}
@@ -0,0 +1,310 @@
+package com.facture.service;
+
+import com.facture.entity.Client;
+import com.facture.entity.Invoice;
+import com.facture.entity.InvoiceItem;
+import com.facture.entity.User;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.util.Matrix;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Visual layout of the invoice pages. Column positions and labels are built once and shared by every document;
+ * only the invoice values are written per request. Fonts are created per document (see {@link PageWriter}).
+ */
+final class InvoicePdfLayout {
+
+    static final PDRectangle PAGE_SIZE = PDRectangle.A4;
+    static final float MARGIN = 50;
+    static final float TOP = PAGE_SIZE.getHeight() - MARGIN;
+    static final float RIGHT = PAGE_SIZE.getWidth() - MARGIN;
+
+    // Items table
+    static final float COL_DESCRIPTION = MARGIN;
+    static final float COL_QUANTITY = MARGIN + 250;
+    static final float COL_UNIT_PRICE = MARGIN + 300;
+    static final float COL_TAX_RATE = MARGIN + 380;
+    static final float COL_AMOUNT = MARGIN + 430;
+    static final float ROW_HEIGHT = 20;
+    static final float ITEMS_BOTTOM = MARGIN + 30;
+    static final float CARRY_FORWARD_Y = MARGIN;
+    static final int DESCRIPTION_MAX_LENGTH = 35;
+
+    // Totals block
+    static final float TOTALS_LABEL_X = RIGHT - 150;
+    static final float TOTALS_VALUE_X = TOTALS_LABEL_X + 80;
+
+    static final String TITLE = "FACTURE";
+    static final String LABEL_CLIENT = "Client:";
+    static final String LABEL_ISSUE_DATE = "Date d'emission: ";
+    static final String LABEL_DUE_DATE = "Date d'echeance: ";
+    static final String[] TABLE_HEADERS = {"Description", "Qte", "P.U. HT", "TVA", "Total HT"};
+    static final float[] TABLE_COLUMNS = {COL_DESCRIPTION, COL_QUANTITY, COL_UNIT_PRICE, COL_TAX_RATE, COL_AMOUNT};
+    static final String LABEL_SUBTOTAL = "Total HT:";
+    static final String LABEL_TOTAL = "Total TTC:";
+    static final String LABEL_PAYMENT = "Informations de paiement:";
+    static final String LABEL_NOTES = "Notes:";
+    static final String LABEL_CONTINUED = " (suite)";
+    static final String LABEL_CARRIED_FORWARD = "A reporter:";
+    static final String LABEL_BROUGHT_FORWARD = "Report:";
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private InvoicePdfLayout() {
+    }
+
+    static PDDocument render(Invoice invoice) throws IOException {
+        return render(invoice, new PDDocument());
+    }
+
+    /**
+     * Lays the invoice out into the given (empty) document, starting new pages as the item table grows.
+     * Items are written as they are iterated, so only the current page's content is being built at any time.
+     */
+    static PDDocument render(Invoice invoice, PDDocument document) throws IOException {
+        try {
+            try (PageWriter writer = new PageWriter(document)) {
+                float y = writeHeader(writer, invoice);
+                y = writeItems(writer, invoice, y);
+                writeFooter(writer, invoice, y);
+            }
+            return document;
+        } catch (IOException | RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    private static float writeHeader(PageWriter writer, Invoice invoice) throws IOException {
+        User user = invoice.user;
+        float y = TOP;
+
+        // Sender
+        writer.text(writer.bold, 18, MARGIN, y, user.companyName != null ? user.companyName : user.getFullName());
+        y -= 20;
+        writer.text(writer.regular, 10, MARGIN, y, user.addressStreet);
+        y -= 15;
+        if (user.addressPostalCode != null && user.addressCity != null) {
+            writer.text(writer.regular, 10, MARGIN, y, user.addressPostalCode + " " + user.addressCity);
+        }
+        y -= 15;
+        if (user.siret != null) {
+            writer.text(writer.regular, 10, MARGIN, y, "SIRET: " + user.siret);
+        }
+
+        // Invoice title and number
+        y -= 40;
+        writer.text(writer.bold, 20, MARGIN, y, TITLE);
+        y -= 25;
+        writer.text(writer.bold, 12, MARGIN, y, "N° " + invoice.invoiceNumber);
+
+        // Recipient
+        Client client = invoice.client;
+        y -= 30;
+        writer.text(writer.bold, 12, MARGIN, y, LABEL_CLIENT);
+        y -= 15;
+        writer.text(writer.regular, 12, MARGIN, y, client.companyName);
+        if (client.addressStreet != null) {
+            y -= 15;
+            writer.text(writer.regular, 12, MARGIN, y, client.addressStreet);
+        }
+        if (client.addressPostalCode != null && client.addressCity != null) {
+            y -= 15;
+            writer.text(writer.regular, 12, MARGIN, y, client.addressPostalCode + " " + client.addressCity);
+        }
+
+        // Dates
+        y -= 30;
+        writer.text(writer.regular, 12, MARGIN, y, LABEL_ISSUE_DATE + invoice.issueDate.format(DATE_FORMATTER));
+        y -= 15;
+        writer.text(writer.regular, 12, MARGIN, y, LABEL_DUE_DATE + invoice.dueDate.format(DATE_FORMATTER));
+
+        return y;
+    }
+
+    private static float writeItems(PageWriter writer, Invoice invoice, float y) throws IOException {
+        y = writeTableHeader(writer, y - 40);
+
+        BigDecimal runningSubtotal = BigDecimal.ZERO;
+        for (InvoiceItem item : invoice.items) {
+            if (y < ITEMS_BOTTOM) {
+                // Carry the running subtotal over to a new page with the table header repeated
+                writer.text(writer.bold, 10, TOTALS_LABEL_X, CARRY_FORWARD_Y, LABEL_CARRIED_FORWARD);
+                writer.text(writer.bold, 10, TOTALS_VALUE_X, CARRY_FORWARD_Y, formatAmount(runningSubtotal));
+                y = writeContinuationHeader(writer, invoice);
+                writer.text(writer.bold, 10, TOTALS_LABEL_X, y, LABEL_BROUGHT_FORWARD);
+                writer.text(writer.bold, 10, TOTALS_VALUE_X, y, formatAmount(runningSubtotal));
+                y = writeTableHeader(writer, y - 25);
+            }
+
+            writer.text(writer.regular, 10, COL_DESCRIPTION, y, truncate(item.description));
+            writer.text(writer.regular, 10, COL_QUANTITY, y, item.quantity.stripTrailingZeros().toPlainString());
+            writer.text(writer.regular, 10, COL_UNIT_PRICE, y, formatAmount(item.unitPrice));
+            writer.text(writer.regular, 10, COL_TAX_RATE, y, item.taxRate.stripTrailingZeros().toPlainString() + "%");
+            writer.text(writer.regular, 10, COL_AMOUNT, y, formatAmount(item.amount));
+            runningSubtotal = runningSubtotal.add(item.amount);
+            y -= ROW_HEIGHT;
+        }
+        return y;
+    }
+
+    private static float writeTableHeader(PageWriter writer, float y) throws IOException {
+        for (int i = 0; i < TABLE_HEADERS.length; i++) {
+            writer.text(writer.bold, 10, TABLE_COLUMNS[i], y, TABLE_HEADERS[i]);
+        }
+        y -= 5;
+        writer.line(MARGIN, y, RIGHT, y);
+        return y - ROW_HEIGHT;
+    }
+
+    private static float writeContinuationHeader(PageWriter writer, Invoice invoice) throws IOException {
+        writer.newPage();
+        writer.text(writer.bold, 12, MARGIN, TOP, TITLE + " N° " + invoice.invoiceNumber + LABEL_CONTINUED);
+        return TOP - 30;
+    }
+
+    private static float footerHeight(Invoice invoice) {
+        float height = 20 + 15 + 15;
+        if (invoice.user.iban != null) {
+            height += 40 + 15 + (invoice.user.bic != null ? 12 : 0);
+        }
+        if (invoice.notes != null && !invoice.notes.isEmpty()) {
+            height += 30 + 15;
+        }
+        return height;
+    }
+
+    private static void writeFooter(PageWriter writer, Invoice invoice, float y) throws IOException {
+        // Keep the totals, payment details and notes together on one page
+        if (y - footerHeight(invoice) < MARGIN) {
+            y = writeContinuationHeader(writer, invoice);
+        }
+
+        // Totals
+        y -= 20;
+        writer.text(writer.regular, 10, TOTALS_LABEL_X, y, LABEL_SUBTOTAL);
+        writer.text(writer.regular, 10, TOTALS_VALUE_X, y, formatAmount(invoice.subtotal));
+        y -= 15;
+        writer.text(writer.regular, 10, TOTALS_LABEL_X, y, "TVA (" + invoice.taxRate.stripTrailingZeros().toPlainString() + "%):");
+        writer.text(writer.regular, 10, TOTALS_VALUE_X, y, formatAmount(invoice.taxAmount));
+        y -= 15;
+        writer.text(writer.bold, 12, TOTALS_LABEL_X, y, LABEL_TOTAL);
+        writer.text(writer.bold, 12, TOTALS_VALUE_X, y, formatAmount(invoice.total));
+
+        // Payment info
+        User user = invoice.user;
+        if (user.iban != null) {
+            y -= 40;
+            writer.text(writer.bold, 10, MARGIN, y, LABEL_PAYMENT);
+            y -= 15;
+            writer.text(writer.regular, 9, MARGIN, y, "IBAN: " + user.iban);
+            if (user.bic != null) {
+                y -= 12;
+                writer.text(writer.regular, 9, MARGIN, y, "BIC: " + user.bic);
+            }
+        }
+
+        // Notes
+        if (invoice.notes != null && !invoice.notes.isEmpty()) {
+            y -= 30;
+            writer.text(writer.bold, 10, MARGIN, y, LABEL_NOTES);
+            y -= 15;
+            writer.text(writer.regular, 9, MARGIN, y, invoice.notes);
+        }
+    }
+
+    static String truncate(String description) {
+        return description.length() > DESCRIPTION_MAX_LENGTH
+                ? description.substring(0, DESCRIPTION_MAX_LENGTH) + "..."
+                : description;
+    }
+
+    static String formatAmount(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).toPlainString() + " EUR";
+    }
+
+    /**
+     * Keeps a single text object open across consecutive text runs and only emits font changes when needed,
+     * instead of one BT/Tf/Td/ET sequence per label.
+     */
+    static final class PageWriter implements AutoCloseable {
+
+        // PDFBox fonts keep unsynchronized encoding and width caches: one instance per document, never shared
+        final PDFont regular = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        final PDFont bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+
+        private final PDDocument document;
+        private PDPageContentStream stream;
+        private boolean inText;
+        private PDFont currentFont;
+        private float currentSize;
+
+        PageWriter(PDDocument document) throws IOException {
+            this.document = document;
+            newPage();
+        }
+
+        /**
+         * Finishes the current page and starts writing on a fresh one.
+         */
+        void newPage() throws IOException {
+            close();
+            PDPage page = new PDPage(PAGE_SIZE);
+            document.addPage(page);
+            stream = new PDPageContentStream(document, page);
+            // Graphics state does not carry over to a new content stream
+            currentFont = null;
+            currentSize = 0;
+        }
+
+        void text(PDFont font, float size, float x, float y, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (!inText) {
+                stream.beginText();
+                inText = true;
+            }
+            if (font != currentFont || size != currentSize) {
+                stream.setFont(font, size);
+                currentFont = font;
+                currentSize = size;
+            }
+            stream.setTextMatrix(Matrix.getTranslateInstance(x, y));
+            stream.showText(value);
+        }
+
+        void line(float x1, float y1, float x2, float y2) throws IOException {
+            endText();
+            stream.moveTo(x1, y1);
+            stream.lineTo(x2, y2);
+            stream.stroke();
+        }
+
+        private void endText() throws IOException {
+            if (inText) {
+                stream.endText();
+                inText = false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (stream != null) {
+                endText();
+                stream.close();
+                stream = null;
+            }
+        }
+    }
+}
@@ -2,21 +2,54 @@ package com.facture.service;
 
 import com.facture.dto.CreateInvoiceRequest;
 import com.facture.dto.InvoiceDto;
+import com.facture.dto.InvoiceItemDto;
+import com.facture.dto.InvoicePageDto;
+import com.facture.dto.InvoiceSummaryDto;
 import com.facture.entity.*;
+import com.facture.util.InvoiceCursor;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class InvoiceService {
 
+    @ConfigProperty(name = "invoice.list.page-size", defaultValue = "50")
+    int defaultPageSize;
+
+    @ConfigProperty(name = "invoice.list.max-page-size", defaultValue = "200")
+    int maxPageSize;
+
+    @Inject
+    PdfCacheService pdfCache;
+
+    @Inject
+    InvoiceNumberAllocator invoiceNumberAllocator;
+
+    @Inject
+    TenantVersionService tenantVersions;
+
+    @Inject
+    Event<InvoiceChangedEvent> invoiceChanged;
+
     @Transactional
     public InvoiceDto createInvoice(Long userId, CreateInvoiceRequest request) {
+        // Taken before any query so a block refill never waits for a second pooled connection;
+        // the number goes back to the counter (or the block) if this transaction rolls back
+        String invoiceNumber = invoiceNumberAllocator.next(userId);
+
         User user = User.findById(userId);
         if (user == null) {
             throw new NotFoundException("User not found");
@@ -30,6 +63,7 @@ public class InvoiceService {
         Invoice invoice = new Invoice();
         invoice.user = user;
         invoice.client = client;
+        invoice.invoiceNumber = invoiceNumber;
         updateInvoiceFromRequest(invoice, request);
 
         // Add items
@@ -39,19 +73,44 @@ public class InvoiceService {
         });
 
         invoice.calculateTotals();
+        invoice.changeSeq = tenantVersions.bump(userId, null);
         invoice.persist();
+        invoiceChanged.fire(new InvoiceChangedEvent(userId, invoice.id, invoice.status));
 
         return InvoiceDto.fromEntity(invoice);
     }
 
-    public List<InvoiceDto> getInvoicesByUserId(Long userId, InvoiceStatus status) {
-        List<Invoice> invoices;
-        if (status != null) {
-            invoices = Invoice.findByUserIdAndStatus(userId, status);
-        } else {
-            invoices = Invoice.findByUserId(userId);
+    public InvoicePageDto<InvoiceDto> getInvoicePage(Long userId, InvoiceStatus status, InvoiceCursor cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        // One extra row tells whether another page follows
+        List<Invoice> invoices = Invoice.findPageByUserId(userId, status,
+                cursor != null ? cursor.issueDate() : null, cursor != null ? cursor.id() : null, pageSize + 1);
+
+        InvoicePageDto<InvoiceDto> page = new InvoicePageDto<>();
+        page.invoices = invoices.stream()
+                .limit(pageSize)
+                .map(InvoiceDto::fromEntity)
+                .collect(Collectors.toList());
+        if (invoices.size() > pageSize) {
+            Invoice last = invoices.get(pageSize - 1);
+            page.nextCursor = new InvoiceCursor(last.issueDate, last.id).encode();
+        }
+        return page;
+    }
+
+    public InvoicePageDto<InvoiceSummaryDto> getInvoiceSummaryPage(Long userId, InvoiceStatus status,
+                                                                  InvoiceCursor cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        List<InvoiceSummaryDto> summaries = Invoice.findSummaryPageByUserId(userId, status,
+                cursor != null ? cursor.issueDate() : null, cursor != null ? cursor.id() : null, pageSize + 1);
+
+        InvoicePageDto<InvoiceSummaryDto> page = new InvoicePageDto<>();
+        page.invoices = summaries.size() > pageSize ? summaries.subList(0, pageSize) : summaries;
+        if (summaries.size() > pageSize) {
+            InvoiceSummaryDto last = summaries.get(pageSize - 1);
+            page.nextCursor = new InvoiceCursor(last.issueDate, last.id).encode();
         }
-        return invoices.stream().map(InvoiceDto::fromEntity).collect(Collectors.toList());
+        return page;
     }
 
     public InvoiceDto getInvoiceById(Long userId, Long invoiceId) {
@@ -63,11 +122,12 @@ public class InvoiceService {
     }
 
     @Transactional
-    public InvoiceDto updateInvoice(Long userId, Long invoiceId, CreateInvoiceRequest request) {
+    public InvoiceDto updateInvoice(Long userId, Long invoiceId, CreateInvoiceRequest request, String ifMatch) {
         Invoice invoice = Invoice.findById(invoiceId);
         if (invoice == null || !invoice.user.id.equals(userId)) {
             throw new NotFoundException("Invoice not found");
         }
+        invoice.changeSeq = tenantVersions.bump(userId, ifMatch);
 
         Client client = Client.findById(request.clientId);
         if (client == null || !client.user.id.equals(userId)) {
@@ -77,15 +137,12 @@ public class InvoiceService {
         invoice.client = client;
         updateInvoiceFromRequest(invoice, request);
 
-        // Update items
-        invoice.items.clear();
-        request.items.forEach(itemDto -> {
-            InvoiceItem item = itemDto.toEntity();
-            invoice.addItem(item);
-        });
+        mergeItems(invoice, request.items);
 
         invoice.calculateTotals();
         invoice.persist();
+        pdfCache.invalidate(invoiceId);
+        invoiceChanged.fire(new InvoiceChangedEvent(userId, invoiceId, invoice.status));
 
         return InvoiceDto.fromEntity(invoice);
     }
@@ -97,25 +154,69 @@ public class InvoiceService {
             throw new NotFoundException("Invoice not found");
         }
         invoice.delete();
+        SyncTombstone.record(userId, SyncTombstone.EntityType.INVOICE, invoiceId, tenantVersions.bump(userId, null));
+        pdfCache.invalidate(invoiceId);
     }
 
     @Transactional
-    public InvoiceDto updateInvoiceStatus(Long userId, Long invoiceId, InvoiceStatus status) {
+    public InvoiceDto updateInvoiceStatus(Long userId, Long invoiceId, InvoiceStatus status, String ifMatch) {
         Invoice invoice = Invoice.findById(invoiceId);
         if (invoice == null || !invoice.user.id.equals(userId)) {
             throw new NotFoundException("Invoice not found");
         }
+        invoice.changeSeq = tenantVersions.bump(userId, ifMatch);
 
         invoice.status = status;
         if (status == InvoiceStatus.PAID && invoice.paidDate == null) {
             invoice.paidDate = LocalDate.now();
         }
         invoice.persist();
+        pdfCache.invalidate(invoiceId);
+        if (status == InvoiceStatus.SENT) {
+            invoiceChanged.fire(new InvoiceChangedEvent(userId, invoiceId, status));
+        }
 
         return InvoiceDto.fromEntity(invoice);
     }
 
-    private void updateInvoiceFromRequest(Invoice invoice, CreateInvoiceRequest request) {
+    /**
+     * Matches the request lines to the invoice's rows by id: matched rows are updated in place (and only written
+     * if a value changed), lines without a known id are inserted and rows missing from the request are orphaned.
+     */
+    private static void mergeItems(Invoice invoice, List<InvoiceItemDto> requested) {
+        Map<Long, InvoiceItem> existing = new HashMap<>();
+        for (InvoiceItem item : invoice.items) {
+            existing.put(item.id, item);
+        }
+
+        List<InvoiceItem> added = new ArrayList<>();
+        for (int index = 0; index < requested.size(); index++) {
+            InvoiceItemDto itemDto = requested.get(index);
+            InvoiceItem item = itemDto.id != null ? existing.remove(itemDto.id) : null;
+            if (item == null) {
+                item = itemDto.toEntity();
+                item.invoice = invoice;
+                added.add(item);
+            } else {
+                itemDto.applyTo(item);
+            }
+            if (!Integer.valueOf(index).equals(item.orderIndex)) {
+                item.orderIndex = index;
+            }
+            // Totals are computed before the flush that would run the entity callback
+            item.calculateAmount();
+        }
+
+        invoice.items.removeAll(existing.values());
+        invoice.items.addAll(added);
+        invoice.items.sort(Comparator.comparing(item -> item.orderIndex));
+    }
+
+    private int pageSize(Integer limit) {
+        return limit != null && limit > 0 ? Math.min(limit, maxPageSize) : defaultPageSize;
+    }
+
+    static void updateInvoiceFromRequest(Invoice invoice, CreateInvoiceRequest request) {
         invoice.issueDate = request.issueDate;
         invoice.dueDate = request.dueDate;
         invoice.status = request.status != null ? request.status : InvoiceStatus.DRAFT;
@@ -0,0 +1,9 @@
+package com.facture.service;
+
+import com.facture.entity.OutboxEmail;
+
+/**
+ * Fired when an email is written to the outbox; observed after commit to wake the dispatcher up.
+ */
+public record OutboxEmailQueued(Long outboxEmailId, OutboxEmail.Priority priority) {
+}
@@ -0,0 +1,473 @@
+package com.facture.service;
+
+import com.facture.entity.Client;
+import com.facture.entity.Invoice;
+import com.facture.entity.InvoiceItem;
+import com.facture.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache for generated Factur-X PDFs, keyed by a hash of everything that ends up in the document.
+ * A changed invoice, client or sender profile produces a new key, so stale entries are never served;
+ * explicit invalidation only frees the space held by the previous version.
+ */
+@ApplicationScoped
+public class PdfCacheService {
+
+    private static final Logger logger = Logger.getLogger(PdfCacheService.class);
+
+    // Bump when the PDF layout or the Factur-X profile changes so old documents are regenerated
+    private static final String LAYOUT_VERSION = "3";
+    private static final char FIELD_SEPARATOR = '\u001f';
+
+    @ConfigProperty(name = "pdf.cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "pdf.cache.memory.max-entries", defaultValue = "256")
+    int memoryMaxEntries;
+
+    @ConfigProperty(name = "pdf.cache.memory.max-size-mb", defaultValue = "64")
+    long memoryMaxSizeMb;
+
+    @ConfigProperty(name = "pdf.cache.disk.enabled", defaultValue = "true")
+    boolean diskEnabled;
+
+    @ConfigProperty(name = "pdf.cache.disk.directory", defaultValue = "/tmp/facture-pdf-cache")
+    String diskDirectory;
+
+    @ConfigProperty(name = "pdf.cache.disk.max-size-mb", defaultValue = "1024")
+    long diskMaxSizeMb;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Access-ordered maps give LRU eviction; both are guarded by their own monitor
+    private final LinkedHashMap<String, byte[]> memoryEntries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Long, String> keysByInvoiceId = new ConcurrentHashMap<>();
+
+    private long memorySize;
+    private long diskSize;
+    private Path diskPath;
+
+    private Counter memoryHits;
+    private Counter diskHits;
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        memoryHits = registry.counter("pdf.cache.hits", "tier", "memory");
+        diskHits = registry.counter("pdf.cache.hits", "tier", "disk");
+        misses = registry.counter("pdf.cache.misses");
+        registry.gauge("pdf.cache.memory.bytes", this, cache -> cache.memorySizeSnapshot());
+        registry.gauge("pdf.cache.disk.bytes", this, cache -> cache.diskSizeSnapshot());
+
+        if (enabled && diskEnabled) {
+            try {
+                diskPath = Files.createDirectories(Path.of(diskDirectory));
+                loadDiskIndex();
+            } catch (IOException e) {
+                logger.warnf("PDF disk cache disabled, cannot use directory %s: %s", diskDirectory, e.getMessage());
+                diskPath = null;
+            }
+        }
+    }
+
+    public String computeKey(Invoice invoice) {
+        StringBuilder content = new StringBuilder(512);
+        append(content, LAYOUT_VERSION);
+
+        append(content, invoice.invoiceNumber);
+        append(content, invoice.issueDate);
+        append(content, invoice.dueDate);
+        append(content, invoice.subtotal);
+        append(content, invoice.taxRate);
+        append(content, invoice.taxAmount);
+        append(content, invoice.total);
+        append(content, invoice.currency);
+        append(content, invoice.notes);
+        append(content, invoice.paymentTerms);
+
+        for (InvoiceItem item : invoice.items) {
+            append(content, item.description);
+            append(content, item.quantity);
+            append(content, item.unitPrice);
+            append(content, item.taxRate);
+            append(content, item.amount);
+        }
+
+        User user = invoice.user;
+        append(content, user.firstName);
+        append(content, user.lastName);
+        append(content, user.companyName);
+        append(content, user.email);
+        append(content, user.phone);
+        append(content, user.siret);
+        append(content, user.addressStreet);
+        append(content, user.addressPostalCode);
+        append(content, user.addressCity);
+        append(content, user.addressCountry);
+        append(content, user.iban);
+        append(content, user.bic);
+
+        Client client = invoice.client;
+        append(content, client.companyName);
+        append(content, client.siret);
+        append(content, client.addressStreet);
+        append(content, client.addressPostalCode);
+        append(content, client.addressCity);
+        append(content, client.addressCountry);
+
+        return sha256(content.toString());
+    }
+
+    public byte[] get(Long invoiceId, String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        byte[] pdf;
+        synchronized (memoryEntries) {
+            pdf = memoryEntries.get(key);
+        }
+        if (pdf != null) {
+            memoryHits.increment();
+            keysByInvoiceId.put(invoiceId, key);
+            return pdf;
+        }
+
+        pdf = readFromDisk(key);
+        if (pdf != null) {
+            diskHits.increment();
+            keysByInvoiceId.put(invoiceId, key);
+            putInMemory(key, pdf);
+            return pdf;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    public void put(Long invoiceId, String key, byte[] pdf) {
+        if (!enabled) {
+            return;
+        }
+
+        String previousKey = keysByInvoiceId.put(invoiceId, key);
+        if (previousKey != null && !previousKey.equals(key)) {
+            evict(previousKey);
+        }
+        putInMemory(key, pdf);
+        writeToDisk(key, pdf);
+    }
+
+    /**
+     * Wraps a response stream so the document is copied to the disk tier while it is being written.
+     * Returns the target unchanged when the disk tier is unavailable.
+     */
+    public CachingOutputStream cachingStream(Long invoiceId, String key, OutputStream target) throws IOException {
+        if (!enabled || diskPath == null) {
+            return new CachingOutputStream(target, null, null, null);
+        }
+        Path tmp = Files.createTempFile(diskPath, key, ".tmp");
+        return new CachingOutputStream(target, tmp, invoiceId, key);
+    }
+
+    public void invalidate(Long invoiceId) {
+        String key = keysByInvoiceId.remove(invoiceId);
+        if (key != null) {
+            evict(key);
+            logger.debugf("PDF cache invalidated for invoice %d", invoiceId);
+        }
+    }
+
+    public double getHitCount() {
+        return memoryHits.count() + diskHits.count();
+    }
+
+    public double getMissCount() {
+        return misses.count();
+    }
+
+    private void putInMemory(String key, byte[] pdf) {
+        long maxBytes = memoryMaxSizeMb * 1024 * 1024;
+        if (pdf.length > maxBytes) {
+            return;
+        }
+
+        synchronized (memoryEntries) {
+            byte[] previous = memoryEntries.put(key, pdf);
+            if (previous != null) {
+                memorySize -= previous.length;
+            }
+            memorySize += pdf.length;
+
+            Iterator<Map.Entry<String, byte[]>> it = memoryEntries.entrySet().iterator();
+            while ((memoryEntries.size() > memoryMaxEntries || memorySize > maxBytes) && it.hasNext()) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                memorySize -= eldest.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private byte[] readFromDisk(String key) {
+        if (diskPath == null) {
+            return null;
+        }
+
+        synchronized (diskEntries) {
+            if (diskEntries.get(key) == null) {
+                return null;
+            }
+        }
+
+        try {
+            return Files.readAllBytes(diskPath.resolve(key + ".pdf"));
+        } catch (IOException e) {
+            logger.debugf("PDF disk cache entry %s unreadable: %s", key, e.getMessage());
+            removeFromDisk(key);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] pdf) {
+        if (diskPath == null || pdf.length > diskMaxSizeMb * 1024 * 1024) {
+            return;
+        }
+
+        try {
+            // Write to a temp file first so readers never see a partially written document
+            Path tmp = Files.createTempFile(diskPath, key, ".tmp");
+            Files.write(tmp, pdf);
+            Files.move(tmp, diskPath.resolve(key + ".pdf"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warnf("Failed to write PDF disk cache entry %s: %s", key, e.getMessage());
+            return;
+        }
+        registerDiskEntry(key, pdf.length);
+    }
+
+    private void registerDiskEntry(String key, long size) {
+        long maxBytes = diskMaxSizeMb * 1024 * 1024;
+        List<String> evicted = new ArrayList<>();
+        synchronized (diskEntries) {
+            Long previous = diskEntries.put(key, size);
+            if (previous != null) {
+                diskSize -= previous;
+            }
+            diskSize += size;
+
+            Iterator<Map.Entry<String, Long>> it = diskEntries.entrySet().iterator();
+            while (diskSize > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                diskSize -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        evicted.forEach(this::deleteFile);
+    }
+
+    private void evict(String key) {
+        synchronized (memoryEntries) {
+            byte[] removed = memoryEntries.remove(key);
+            if (removed != null) {
+                memorySize -= removed.length;
+            }
+        }
+        removeFromDisk(key);
+    }
+
+    private void removeFromDisk(String key) {
+        if (diskPath == null) {
+            return;
+        }
+        synchronized (diskEntries) {
+            Long removed = diskEntries.remove(key);
+            if (removed == null) {
+                return;
+            }
+            diskSize -= removed;
+        }
+        deleteFile(key);
+    }
+
+    private void deleteFile(String key) {
+        try {
+            Files.deleteIfExists(diskPath.resolve(key + ".pdf"));
+        } catch (IOException e) {
+            logger.debugf("Failed to delete PDF disk cache entry %s: %s", key, e.getMessage());
+        }
+    }
+
+    private void loadDiskIndex() throws IOException {
+        try (Stream<Path> files = Files.list(diskPath)) {
+            // Partial copies left behind by an interrupted download
+            files.filter(file -> file.getFileName().toString().endsWith(".tmp"))
+                    .forEach(file -> file.toFile().delete());
+        }
+        try (Stream<Path> files = Files.list(diskPath)) {
+            // Oldest files first so they are the first to be evicted
+            files.filter(file -> file.getFileName().toString().endsWith(".pdf"))
+                    .sorted(Comparator.comparingLong(this::lastModified))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        long size = file.toFile().length();
+                        synchronized (diskEntries) {
+                            diskEntries.put(name.substring(0, name.length() - 4), size);
+                            diskSize += size;
+                        }
+                    });
+        }
+        logger.infof("PDF disk cache ready in %s (%d entries)", diskPath, diskEntries.size());
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private double memorySizeSnapshot() {
+        synchronized (memoryEntries) {
+            return memorySize;
+        }
+    }
+
+    private double diskSizeSnapshot() {
+        synchronized (diskEntries) {
+            return diskSize;
+        }
+    }
+
+    private static void append(StringBuilder content, Object value) {
+        if (value != null) {
+            content.append(value);
+        }
+        content.append(FIELD_SEPARATOR);
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public final class CachingOutputStream extends OutputStream {
+
+        private final OutputStream target;
+        private final Path tmp;
+        private final Long invoiceId;
+        private final String key;
+        private OutputStream copy;
+        private long size;
+
+        private CachingOutputStream(OutputStream target, Path tmp, Long invoiceId, String key) throws IOException {
+            this.target = target;
+            this.tmp = tmp;
+            this.invoiceId = invoiceId;
+            this.key = key;
+            this.copy = tmp != null ? new BufferedOutputStream(Files.newOutputStream(tmp)) : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            if (copy != null) {
+                copy.write(b);
+                size++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                size += len;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        /**
+         * Publishes the copied document in the disk tier. Must only be called once the document is complete.
+         */
+        public void commit() {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.close();
+                copy = null;
+                if (size > diskMaxSizeMb * 1024 * 1024) {
+                    Files.deleteIfExists(tmp);
+                    return;
+                }
+                Files.move(tmp, diskPath.resolve(key + ".pdf"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.warnf("Failed to write PDF disk cache entry %s: %s", key, e.getMessage());
+                discard();
+                return;
+            }
+
+            String previousKey = keysByInvoiceId.put(invoiceId, key);
+            if (previousKey != null && !previousKey.equals(key)) {
+                evict(previousKey);
+            }
+            registerDiskEntry(key, size);
+        }
+
+        /**
+         * Drops the partial copy, e.g. when generation failed or the client went away.
+         */
+        public void discard() {
+            if (tmp == null) {
+                return;
+            }
+            try {
+                if (copy != null) {
+                    copy.close();
+                    copy = null;
+                }
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                logger.debugf("Failed to delete partial PDF cache entry %s: %s", tmp, e.getMessage());
+            }
+        }
+    }
+}
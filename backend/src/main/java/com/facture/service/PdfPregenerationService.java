@@ -0,0 +1,146 @@
+package com.facture.service;
+
+import com.facture.entity.Invoice;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders Factur-X PDFs in the background after invoice changes so the first download is served from the cache.
+ * An invoice is queued at most once: repeated edits before a worker picks it up collapse into a single job,
+ * which always renders the latest committed state.
+ */
+@ApplicationScoped
+public class PdfPregenerationService {
+
+    private static final Logger logger = Logger.getLogger(PdfPregenerationService.class);
+
+    @ConfigProperty(name = "pdf.pregeneration.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "pdf.pregeneration.workers", defaultValue = "2")
+    int workerCount;
+
+    @ConfigProperty(name = "pdf.pregeneration.queue-depth", defaultValue = "1000")
+    int queueDepth;
+
+    @Inject
+    PdfService pdfService;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Enqueue time per pending invoice; presence in the map means a job is already queued
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private BlockingQueue<Long> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private Timer lag;
+    private Counter processed;
+    private Counter coalesced;
+    private Counter dropped;
+    private Counter failed;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        queue = new LinkedBlockingQueue<>(queueDepth);
+        lag = registry.timer("pdf.pregeneration.lag");
+        processed = registry.counter("pdf.pregeneration.jobs", "result", "processed");
+        failed = registry.counter("pdf.pregeneration.jobs", "result", "failed");
+        coalesced = registry.counter("pdf.pregeneration.jobs", "result", "coalesced");
+        dropped = registry.counter("pdf.pregeneration.jobs", "result", "dropped");
+        registry.gauge("pdf.pregeneration.queue.size", queue, BlockingQueue::size);
+        registry.gauge("pdf.pregeneration.queue.oldest.seconds", pending, PdfPregenerationService::oldestPendingSeconds);
+
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "pdf-pregeneration-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        logger.infof("PDF pre-generation started with %d workers (queue depth %d)", workerCount, queueDepth);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    void onInvoiceChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) InvoiceChangedEvent event) {
+        enqueue(event.invoiceId());
+    }
+
+    public void enqueue(Long invoiceId) {
+        if (!running) {
+            return;
+        }
+
+        if (pending.putIfAbsent(invoiceId, System.nanoTime()) != null) {
+            coalesced.increment();
+            return;
+        }
+        if (!queue.offer(invoiceId)) {
+            pending.remove(invoiceId);
+            dropped.increment();
+            logger.debugf("PDF pre-generation queue full, invoice %d will be rendered on first download", invoiceId);
+        }
+    }
+
+    private void work() {
+        while (running) {
+            Long invoiceId;
+            try {
+                invoiceId = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // Remove before rendering so an edit made while we work queues a fresh job
+            Long enqueuedAt = pending.remove(invoiceId);
+            if (enqueuedAt != null) {
+                lag.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+
+            try {
+                // Render after the read commits, so the connection goes back to the pool before the CPU-heavy part
+                Invoice invoice = QuarkusTransaction.requiringNew().call(() -> Invoice.findByIdWithDocumentData(invoiceId));
+                if (invoice != null) {
+                    pdfService.getFacturXPdf(invoice);
+                }
+                processed.increment();
+            } catch (Exception e) {
+                failed.increment();
+                logger.warnf("PDF pre-generation failed for invoice %d: %s", invoiceId, e.getMessage());
+            }
+        }
+    }
+
+    private static double oldestPendingSeconds(Map<Long, Long> pending) {
+        long now = System.nanoTime();
+        long oldest = pending.values().stream().mapToLong(Long::longValue).min().orElse(now);
+        return (now - oldest) / 1_000_000_000.0;
+    }
+}
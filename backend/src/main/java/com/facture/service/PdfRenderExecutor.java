@@ -0,0 +1,163 @@
+package com.facture.service;
+
+import com.facture.exception.PdfGenerationRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead for on-demand PDF and XML rendering. Requests run on a small dedicated pool instead of the HTTP
+ * worker threads; when every renderer is busy and the queue is full, or a queued request does not start
+ * within the maximum wait, the caller is turned away with a {@link PdfGenerationRejectedException}.
+ */
+@ApplicationScoped
+public class PdfRenderExecutor {
+
+    private static final Logger logger = Logger.getLogger(PdfRenderExecutor.class);
+
+    @ConfigProperty(name = "pdf.executor.workers", defaultValue = "0")
+    int configuredWorkers;
+
+    @ConfigProperty(name = "pdf.executor.queue-limit", defaultValue = "32")
+    int queueLimit;
+
+    @ConfigProperty(name = "pdf.executor.max-wait", defaultValue = "2S")
+    Duration maxWait;
+
+    @ConfigProperty(name = "pdf.executor.retry-after-seconds", defaultValue = "5")
+    long retryAfterSeconds;
+
+    @Inject
+    MeterRegistry registry;
+
+    private ThreadPoolExecutor executor;
+    private Counter rejectedQueueFull;
+    private Counter rejectedWaitTimeout;
+
+    @PostConstruct
+    void init() {
+        int workers = configuredWorkers > 0 ? configuredWorkers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-render-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        rejectedQueueFull = registry.counter("pdf.executor.rejections", "reason", "queue_full");
+        rejectedWaitTimeout = registry.counter("pdf.executor.rejections", "reason", "wait_timeout");
+        registry.gauge("pdf.executor.active", executor, ThreadPoolExecutor::getActiveCount);
+        registry.gauge("pdf.executor.queue.size", executor, pool -> pool.getQueue().size());
+
+        logger.infof("PDF render executor started with %d workers (queue limit %d, max wait %s)", workers, queueLimit, maxWait);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues the task and blocks until a renderer has picked it up, so the caller knows the request was admitted
+     * before committing to a response. The returned future completes when the task itself has finished.
+     */
+    public <T> Future<T> start(Callable<T> task) {
+        AdmittedTask<T> admitted = new AdmittedTask<>(task);
+        try {
+            executor.execute(admitted);
+        } catch (RejectedExecutionException e) {
+            rejectedQueueFull.increment();
+            throw new PdfGenerationRejectedException("PDF generation is saturated, try again later", retryAfterSeconds);
+        }
+
+        if (!admitted.awaitStart(maxWait)) {
+            executor.remove(admitted);
+            rejectedWaitTimeout.increment();
+            throw new PdfGenerationRejectedException("PDF generation is saturated, try again later", retryAfterSeconds);
+        }
+        return admitted.result;
+    }
+
+    public <T> T call(Callable<T> task) throws IOException {
+        return await(start(task));
+    }
+
+    public <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for PDF generation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("PDF generation failed", cause);
+        }
+    }
+
+    private static class AdmittedTask<T> implements Runnable {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int ABANDONED = 2;
+
+        final Callable<T> task;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        AdmittedTask(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            started.countDown();
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        boolean awaitStart(Duration timeout) {
+            try {
+                if (started.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The renderer may have picked the task up right as the wait ran out
+            return !state.compareAndSet(QUEUED, ABANDONED);
+        }
+    }
+}
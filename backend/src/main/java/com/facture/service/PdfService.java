@@ -3,13 +3,13 @@ package com.facture.service;
 import com.facture.entity.Invoice;
 import com.facture.entity.InvoiceItem;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
+import org.mustangproject.ZUGFeRD.Profiles;
+import org.mustangproject.ZUGFeRD.ZUGFeRD2PullProvider;
 import org.mustangproject.ZUGFeRD.ZUGFeRDExporterFromA1;
 import org.mustangproject.Item;
 import org.mustangproject.Product;
@@ -19,302 +19,151 @@ import org.mustangproject.BankDetails;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.time.format.DateTimeFormatter;
+import java.io.OutputStream;
 
 @ApplicationScoped
 public class PdfService {
 
     private static final Logger logger = Logger.getLogger(PdfService.class);
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int FACTURX_VERSION = 2;
+    private static final String FACTURX_PROFILE = "EN16931";
+
+    public enum GenerationMode {
+        // Visual page is built directly into the document that receives the PDF/A-3 conversion
+        SINGLE_PASS,
+        // Visual page is saved, validated as PDF/A-1 and parsed again by the Mustang exporter
+        RELOAD
+    }
 
-    public byte[] generateFacturXPdf(Invoice invoice) throws IOException {
-        logger.infof("Generating Factur-X PDF for invoice: %s", invoice.invoiceNumber);
+    @Inject
+    PdfCacheService pdfCache;
 
-        // 1. Create visual PDF/A-1
-        byte[] visualPdf = createVisualPdf(invoice);
+    @ConfigProperty(name = "pdf.generation.mode", defaultValue = "SINGLE_PASS")
+    GenerationMode generationMode;
 
-        // 2. Create Mustangproject Invoice object
-        org.mustangproject.Invoice mustangInvoice = createMustangInvoice(invoice);
+    @ConfigProperty(name = "pdf.large-document.item-threshold", defaultValue = "500")
+    int largeDocumentItemThreshold = 500;
 
-        // 3. Create Factur-X PDF/A-3 with embedded XML using ZUGFeRDExporterFromA1
-        ZUGFeRDExporterFromA1 exporter = new ZUGFeRDExporterFromA1();
-        exporter.load(visualPdf);
-        exporter.setZUGFeRDVersion(2);
-        exporter.setProfile("EN16931");
-        exporter.setTransaction(mustangInvoice);
+    @ConfigProperty(name = "pdf.large-document.max-main-memory-mb", defaultValue = "4")
+    long largeDocumentMaxMainMemoryMb = 4;
 
-        // 5. Export to byte array
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        exporter.export(outputStream);
+    public byte[] getFacturXPdf(Invoice invoice) throws IOException {
+        String cacheKey = cacheKey(invoice);
+        byte[] cached = findCachedFacturXPdf(invoice, cacheKey);
+        if (cached != null) {
+            return cached;
+        }
 
-        logger.infof("Factur-X PDF generated successfully for invoice: %s", invoice.invoiceNumber);
-        return outputStream.toByteArray();
+        byte[] pdf = generateFacturXPdf(invoice);
+        pdfCache.put(invoice.id, cacheKey, pdf);
+        return pdf;
     }
 
-    private byte[] createVisualPdf(Invoice invoice) throws IOException {
-        PDDocument document = new PDDocument();
-        PDPage page = new PDPage(PDRectangle.A4);
-        document.addPage(page);
-
-        PDPageContentStream contentStream = new PDPageContentStream(document, page);
-
-        float margin = 50;
-        float yPosition = page.getMediaBox().getHeight() - margin;
-        float fontSize = 12;
-
-        // Header - Company info
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), 18);
-        contentStream.newLineAtOffset(margin, yPosition);
-        contentStream.showText(invoice.user.companyName != null ? invoice.user.companyName : invoice.user.getFullName());
-        contentStream.endText();
-
-        yPosition -= 20;
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
-        contentStream.newLineAtOffset(margin, yPosition);
-        if (invoice.user.addressStreet != null) {
-            contentStream.showText(invoice.user.addressStreet);
-        }
-        contentStream.endText();
+    public String cacheKey(Invoice invoice) {
+        return pdfCache.computeKey(invoice);
+    }
 
-        yPosition -= 15;
-        contentStream.beginText();
-        contentStream.newLineAtOffset(margin, yPosition);
-        if (invoice.user.addressPostalCode != null && invoice.user.addressCity != null) {
-            contentStream.showText(invoice.user.addressPostalCode + " " + invoice.user.addressCity);
+    public byte[] findCachedFacturXPdf(Invoice invoice, String cacheKey) {
+        byte[] cached = pdfCache.get(invoice.id, cacheKey);
+        if (cached != null) {
+            logger.debugf("Factur-X PDF served from cache for invoice: %s", invoice.invoiceNumber);
         }
-        contentStream.endText();
+        return cached;
+    }
 
-        yPosition -= 15;
-        contentStream.beginText();
-        contentStream.newLineAtOffset(margin, yPosition);
-        if (invoice.user.siret != null) {
-            contentStream.showText("SIRET: " + invoice.user.siret);
-        }
-        contentStream.endText();
-
-        // Invoice title and number
-        yPosition -= 40;
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), 20);
-        contentStream.newLineAtOffset(margin, yPosition);
-        contentStream.showText("FACTURE");
-        contentStream.endText();
-
-        yPosition -= 25;
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), fontSize);
-        contentStream.newLineAtOffset(margin, yPosition);
-        contentStream.showText("N° " + invoice.invoiceNumber);
-        contentStream.endText();
-
-        // Client info
-        yPosition -= 30;
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), fontSize);
-        contentStream.newLineAtOffset(margin, yPosition);
-        contentStream.showText("Client:");
-        contentStream.endText();
-
-        yPosition -= 15;
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), fontSize);
-        contentStream.newLineAtOffset(margin, yPosition);
-        contentStream.showText(invoice.client.companyName);
-        contentStream.endText();
-
-        if (invoice.client.addressStreet != null) {
-            yPosition -= 15;
-            contentStream.beginText();
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText(invoice.client.addressStreet);
-            contentStream.endText();
+    /**
+     * Writes the document straight to the given stream, keeping a copy in the disk cache tier
+     * once the whole document has been written.
+     */
+    public void streamFacturXPdf(Invoice invoice, String cacheKey, OutputStream outputStream) throws IOException {
+        PdfCacheService.CachingOutputStream cachingStream = pdfCache.cachingStream(invoice.id, cacheKey, outputStream);
+        try {
+            writeFacturXPdf(invoice, generationMode, cachingStream);
+            cachingStream.flush();
+            cachingStream.commit();
+        } catch (IOException | RuntimeException e) {
+            cachingStream.discard();
+            throw e;
         }
+    }
 
-        if (invoice.client.addressPostalCode != null && invoice.client.addressCity != null) {
-            yPosition -= 15;
-            contentStream.beginText();
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText(invoice.client.addressPostalCode + " " + invoice.client.addressCity);
-            contentStream.endText();
-        }
+    public byte[] generateFacturXPdf(Invoice invoice) throws IOException {
+        return generateFacturXPdf(invoice, generationMode);
+    }
 
-        // Dates
-        yPosition -= 30;
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), fontSize);
-        contentStream.newLineAtOffset(margin, yPosition);
-        contentStream.showText("Date d'emission: " + invoice.issueDate.format(DATE_FORMATTER));
-        contentStream.endText();
-
-        yPosition -= 15;
-        contentStream.beginText();
-        contentStream.newLineAtOffset(margin, yPosition);
-        contentStream.showText("Date d'echeance: " + invoice.dueDate.format(DATE_FORMATTER));
-        contentStream.endText();
-
-        // Items table header
-        yPosition -= 40;
-        float tableMargin = margin;
-
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), 10);
-        contentStream.newLineAtOffset(tableMargin, yPosition);
-        contentStream.showText("Description");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(tableMargin + 250, yPosition);
-        contentStream.showText("Qte");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(tableMargin + 300, yPosition);
-        contentStream.showText("P.U. HT");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(tableMargin + 380, yPosition);
-        contentStream.showText("TVA");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(tableMargin + 430, yPosition);
-        contentStream.showText("Total HT");
-        contentStream.endText();
-
-        // Line under header
-        yPosition -= 5;
-        contentStream.moveTo(tableMargin, yPosition);
-        contentStream.lineTo(page.getMediaBox().getWidth() - margin, yPosition);
-        contentStream.stroke();
-
-        // Items
-        yPosition -= 20;
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
+    public byte[] generateFacturXPdf(Invoice invoice, GenerationMode mode) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        writeFacturXPdf(invoice, mode, outputStream);
+        return outputStream.toByteArray();
+    }
 
-        for (InvoiceItem item : invoice.items) {
-            contentStream.beginText();
-            contentStream.newLineAtOffset(tableMargin, yPosition);
-            // Truncate description if too long
-            String desc = item.description.length() > 35 ? item.description.substring(0, 35) + "..." : item.description;
-            contentStream.showText(desc);
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(tableMargin + 250, yPosition);
-            contentStream.showText(item.quantity.stripTrailingZeros().toPlainString());
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(tableMargin + 300, yPosition);
-            contentStream.showText(String.format("%.2f EUR", item.unitPrice));
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(tableMargin + 380, yPosition);
-            contentStream.showText(item.taxRate.stripTrailingZeros().toPlainString() + "%");
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(tableMargin + 430, yPosition);
-            contentStream.showText(String.format("%.2f EUR", item.amount));
-            contentStream.endText();
-
-            yPosition -= 20;
-        }
+    public void writeFacturXPdf(Invoice invoice, GenerationMode mode, OutputStream outputStream) throws IOException {
+        logger.infof("Generating Factur-X PDF for invoice: %s", invoice.invoiceNumber);
 
-        // Totals
-        yPosition -= 20;
-        float totalsX = page.getMediaBox().getWidth() - margin - 150;
-
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
-        contentStream.newLineAtOffset(totalsX, yPosition);
-        contentStream.showText("Total HT:");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(totalsX + 80, yPosition);
-        contentStream.showText(String.format("%.2f EUR", invoice.subtotal));
-        contentStream.endText();
-
-        yPosition -= 15;
-        contentStream.beginText();
-        contentStream.newLineAtOffset(totalsX, yPosition);
-        contentStream.showText("TVA (" + invoice.taxRate.stripTrailingZeros().toPlainString() + "%):");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(totalsX + 80, yPosition);
-        contentStream.showText(String.format("%.2f EUR", invoice.taxAmount));
-        contentStream.endText();
-
-        yPosition -= 15;
-        contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), 12);
-        contentStream.newLineAtOffset(totalsX, yPosition);
-        contentStream.showText("Total TTC:");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(totalsX + 80, yPosition);
-        contentStream.showText(String.format("%.2f EUR", invoice.total));
-        contentStream.endText();
-
-        // Payment info
-        if (invoice.user.iban != null) {
-            yPosition -= 40;
-            contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), 10);
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText("Informations de paiement:");
-            contentStream.endText();
-
-            yPosition -= 15;
-            contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 9);
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText("IBAN: " + invoice.user.iban);
-            contentStream.endText();
-
-            if (invoice.user.bic != null) {
-                yPosition -= 12;
-                contentStream.beginText();
-                contentStream.newLineAtOffset(margin, yPosition);
-                contentStream.showText("BIC: " + invoice.user.bic);
-                contentStream.endText();
+        // 1. Create Mustangproject Invoice object
+        org.mustangproject.Invoice mustangInvoice = createMustangInvoice(invoice);
+
+        if (mode == GenerationMode.SINGLE_PASS) {
+            // 2. Lay out the visual page and hand the open document to the exporter
+            PDDocument document = createVisualDocument(invoice);
+            try {
+                FacturXExporter exporter = new FacturXExporter().load(document);
+                exporter.setZUGFeRDVersion(FACTURX_VERSION);
+                exporter.setProfile(FACTURX_PROFILE);
+                exporter.setTransaction(mustangInvoice);
+
+                // 3. Convert to PDF/A-3, attach the XML and serialize once
+                exporter.export(outputStream);
+            } finally {
+                document.close();
             }
+        } else {
+            // 2. Create visual PDF/A-1
+            byte[] visualPdf = createVisualPdf(invoice);
+
+            // 3. Create Factur-X PDF/A-3 with embedded XML using ZUGFeRDExporterFromA1
+            // The visual page uses non-embedded standard fonts, so it never passes the PDF/A-1 preflight
+            ZUGFeRDExporterFromA1 exporter = new ZUGFeRDExporterFromA1();
+            exporter.ignorePDFAErrors();
+            exporter.load(visualPdf);
+            exporter.setZUGFeRDVersion(FACTURX_VERSION);
+            exporter.setProfile(FACTURX_PROFILE);
+            exporter.setTransaction(mustangInvoice);
+            exporter.export(outputStream);
         }
 
-        // Notes
-        if (invoice.notes != null && !invoice.notes.isEmpty()) {
-            yPosition -= 30;
-            contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), 10);
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText("Notes:");
-            contentStream.endText();
-
-            yPosition -= 15;
-            contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 9);
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText(invoice.notes);
-            contentStream.endText();
-        }
+        logger.infof("Factur-X PDF generated successfully for invoice: %s", invoice.invoiceNumber);
+    }
 
-        contentStream.close();
+    /**
+     * Builds only the EN16931 CII XML that gets embedded in the Factur-X PDF, without touching PDFBox.
+     */
+    public byte[] generateFacturXXml(Invoice invoice) {
+        ZUGFeRD2PullProvider provider = new ZUGFeRD2PullProvider();
+        provider.setProfile(Profiles.getByName(FACTURX_PROFILE, FACTURX_VERSION));
+        provider.generateXML(createMustangInvoice(invoice));
+        return provider.getXML();
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        document.save(baos);
-        document.close();
+    byte[] createVisualPdf(Invoice invoice) throws IOException {
+        try (PDDocument document = createVisualDocument(invoice)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+            document.save(baos);
+            return baos.toByteArray();
+        }
+    }
 
-        return baos.toByteArray();
+    private PDDocument createVisualDocument(Invoice invoice) throws IOException {
+        if (invoice.items.size() < largeDocumentItemThreshold) {
+            return InvoicePdfLayout.render(invoice);
+        }
+        // Page content of very long invoices spills to temp files instead of growing the heap
+        MemoryUsageSetting memoryUsage = MemoryUsageSetting.setupMixed(largeDocumentMaxMainMemoryMb * 1024 * 1024);
+        return InvoicePdfLayout.render(invoice, new PDDocument(memoryUsage.streamCache));
     }
 
-    private org.mustangproject.Invoice createMustangInvoice(com.facture.entity.Invoice invoice) {
+    org.mustangproject.Invoice createMustangInvoice(com.facture.entity.Invoice invoice) {
         // Create sender (TradeParty)
         TradeParty sender = new TradeParty(
             invoice.user.companyName != null ? invoice.user.companyName : invoice.user.getFullName(),
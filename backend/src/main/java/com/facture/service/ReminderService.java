@@ -0,0 +1,250 @@
+package com.facture.service;
+
+import com.facture.dto.ReminderSettingsDto;
+import com.facture.entity.Invoice;
+import com.facture.entity.Reminder;
+import com.facture.entity.ReminderSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Automatic payment reminders with per-user escalation (e.g. D+1, D+7, D+15 after the due date).
+ * <p>
+ * A run walks the OVERDUE invoices in keyset pages, so it holds at most one page in memory. For each page, the
+ * steps already reminded are read in one query, and the due reminders are recorded as PENDING together with their
+ * email in the outbox, in the page's transaction; the unique (invoice, step) index and an advisory lock held by that
+ * transaction keep several nodes from recording the same step. Sending, pacing and retries are left to the outbox,
+ * which marks the reminder SENT or FAILED. An invoice that skipped steps (e.g. the engine was down) gets only its
+ * latest due step. A page that fails is recorded again one invoice per transaction, so a single bad invoice is
+ * counted and skipped instead of ending the run.
+ */
+@ApplicationScoped
+public class ReminderService {
+
+    private static final Logger logger = Logger.getLogger(ReminderService.class);
+    // Application-wide key of the advisory lock, any constant unused by other locks
+    private static final long ADVISORY_LOCK_KEY = 7_310_482_202L;
+    private static final int MAX_OFFSET_DAYS = 365;
+
+    @ConfigProperty(name = "reminder.default-offsets", defaultValue = "1,7,15")
+    String defaultOffsets;
+
+    @ConfigProperty(name = "reminder.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @Inject
+    EmailService emailService;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Counter recorded;
+    private Counter failed;
+    private Timer runDuration;
+
+    @PostConstruct
+    void init() {
+        recorded = registry.counter("reminders.recorded");
+        failed = registry.counter("reminders.failed");
+        runDuration = registry.timer("reminders.run.duration");
+    }
+
+    public ReminderSettingsDto getSettings(Long userId) {
+        ReminderSettings settings = ReminderSettings.findById(userId);
+        ReminderSettingsDto dto = new ReminderSettingsDto();
+        dto.enabled = settings == null || settings.enabled;
+        int[] offsets = settings != null ? settings.offsets() : ReminderSettings.parseOffsets(defaultOffsets);
+        dto.offsets = Arrays.stream(offsets).boxed().collect(Collectors.toList());
+        return dto;
+    }
+
+    /**
+     * Throws IllegalArgumentException unless the offsets are strictly ascending days between 1 and 365.
+     */
+    @Transactional
+    public ReminderSettingsDto updateSettings(Long userId, ReminderSettingsDto request) {
+        int[] offsets = request.offsets.stream().mapToInt(offset -> offset != null ? offset : 0).toArray();
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] < 1 || offsets[i] > MAX_OFFSET_DAYS || (i > 0 && offsets[i] <= offsets[i - 1])) {
+                throw new IllegalArgumentException("Reminder offsets must be ascending days between 1 and " + MAX_OFFSET_DAYS);
+            }
+        }
+
+        ReminderSettings settings = ReminderSettings.findById(userId);
+        if (settings == null) {
+            settings = new ReminderSettings();
+            settings.userId = userId;
+        }
+        settings.enabled = request.enabled;
+        settings.offsetDays = ReminderSettings.formatOffsets(offsets);
+        settings.persist();
+        return getSettings(userId);
+    }
+
+    @Scheduled(cron = "{reminder.cron}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void run() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        int[] fallbackOffsets = ReminderSettings.parseOffsets(defaultOffsets);
+        RunStats stats = new RunStats();
+
+        long afterId = 0;
+        while (true) {
+            long pageAfterId = afterId;
+            Page page;
+            try {
+                page = QuarkusTransaction.requiringNew().call(() -> recordPage(pageAfterId, batchSize, today, fallbackOffsets));
+            } catch (Exception e) {
+                logger.warnf("Reminder page after invoice %d failed, recording its invoices one by one: %s",
+                        pageAfterId, e.getMessage());
+                page = recordEach(pageAfterId, today, fallbackOffsets, stats);
+            }
+            if (page == null) {
+                logger.debug("Reminder run stopped, another node holds the reminder lock");
+                break;
+            }
+            stats.scanned += page.scanned;
+            stats.recorded += page.recorded;
+            recorded.increment(page.recorded);
+            if (page.scanned < batchSize) {
+                break;
+            }
+            afterId = page.lastId;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        runDuration.record(elapsed, TimeUnit.NANOSECONDS);
+        logger.infof("Reminder run: %d overdue invoices scanned, %d reminders queued, %d failed (%d ms)",
+                stats.scanned, stats.recorded, stats.failed, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    // The failed page again, one invoice per transaction; null when another node took the lock in between
+    private Page recordEach(long afterId, LocalDate today, int[] fallbackOffsets, RunStats stats) {
+        List<Long> invoiceIds = QuarkusTransaction.requiringNew().call(() -> Invoice.findOverduePageForReminders(afterId, batchSize)
+                .stream().map(row -> (Long) row[0]).toList());
+        Page page = new Page(invoiceIds.size());
+        long previousId = afterId;
+        for (Long invoiceId : invoiceIds) {
+            long invoiceAfterId = previousId;
+            try {
+                Page single = QuarkusTransaction.requiringNew().call(() -> recordPage(invoiceAfterId, 1, today, fallbackOffsets));
+                if (single == null) {
+                    return null;
+                }
+                page.recorded += single.recorded;
+            } catch (Exception e) {
+                stats.failed++;
+                failed.increment();
+                logger.errorf(e, "Reminder for invoice %d failed, skipped until the next run", invoiceId);
+            }
+            previousId = invoiceId;
+        }
+        page.lastId = previousId;
+        return page;
+    }
+
+    // Null when another node is running reminders
+    private Page recordPage(long afterId, int limit, LocalDate today, int[] fallbackOffsets) {
+        Boolean locked = (Boolean) Invoice.getEntityManager()
+                .createNativeQuery("select pg_try_advisory_xact_lock(:key)")
+                .setParameter("key", ADVISORY_LOCK_KEY)
+                .getSingleResult();
+        if (!Boolean.TRUE.equals(locked)) {
+            return null;
+        }
+
+        List<Object[]> rows = Invoice.findOverduePageForReminders(afterId, limit);
+        Page page = new Page(rows.size());
+        if (rows.isEmpty()) {
+            return page;
+        }
+
+        List<Long> invoiceIds = new ArrayList<>(rows.size());
+        List<Long> userIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            invoiceIds.add((Long) row[0]);
+            userIds.add((Long) row[1]);
+        }
+        Map<Long, ReminderSettings> settingsByUser = new HashMap<>();
+        for (ReminderSettings settings : ReminderSettings.findByUserIds(userIds.stream().distinct().toList())) {
+            settingsByUser.put(settings.userId, settings);
+        }
+        Map<Long, Integer> lastSteps = Reminder.findLastAutoSteps(invoiceIds);
+
+        for (Object[] row : rows) {
+            Long invoiceId = (Long) row[0];
+            page.lastId = invoiceId;
+            ReminderSettings settings = settingsByUser.get((Long) row[1]);
+            if (settings != null && !settings.enabled) {
+                continue;
+            }
+
+            int[] offsets = settings != null ? settings.offsets() : fallbackOffsets;
+            int daysOverdue = (int) ChronoUnit.DAYS.between((LocalDate) row[2], today);
+            int step = dueStep(offsets, daysOverdue);
+            Integer lastStep = lastSteps.get(invoiceId);
+            if (step < 0 || (lastStep != null && lastStep >= step)) {
+                continue;
+            }
+
+            Reminder reminder = new Reminder();
+            reminder.invoice = Invoice.getEntityManager().getReference(Invoice.class, invoiceId);
+            reminder.type = Reminder.ReminderType.AUTO;
+            reminder.step = step;
+            reminder.status = Reminder.ReminderStatus.PENDING;
+            reminder.sentBy = "system";
+            reminder.message = "Relance automatique J+" + offsets[step];
+            reminder.persist();
+
+            emailService.sendReminderEmail((Long) row[1], (String) row[4], (String) row[5], (String) row[3], daysOverdue, reminder.id);
+            page.recorded++;
+        }
+        return page;
+    }
+
+    // Index of the last offset reached, -1 before the first one
+    private static int dueStep(int[] offsets, int daysOverdue) {
+        int step = -1;
+        for (int i = 0; i < offsets.length && offsets[i] <= daysOverdue; i++) {
+            step = i;
+        }
+        return step;
+    }
+
+    private static class Page {
+
+        final int scanned;
+        int recorded;
+        long lastId;
+
+        Page(int scanned) {
+            this.scanned = scanned;
+        }
+    }
+
+    private static class RunStats {
+
+        int scanned;
+        int recorded;
+        int failed;
+    }
+}
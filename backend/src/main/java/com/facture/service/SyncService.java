@@ -0,0 +1,103 @@
+package com.facture.service;
+
+import com.facture.dto.ClientDto;
+import com.facture.dto.InvoiceDto;
+import com.facture.dto.SyncDto;
+import com.facture.entity.Client;
+import com.facture.entity.Invoice;
+import com.facture.entity.SyncTombstone;
+import com.facture.entity.TenantVersion;
+import com.facture.util.SyncToken;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Delta sync of a user's invoices and clients. Every write stamps the row with the new tenant version
+ * (see {@link TenantVersionService#bump}) and every delete leaves a {@link SyncTombstone}, so the changes since a
+ * token are the rows stamped after it. Writers of a user are serialized by the tenant version row lock, so every
+ * row stamped with a version not above the current one is committed and a token never skips a change.
+ * <p>
+ * A full snapshot is paged like a delta. Its later pages are not resets: they carry the tombstones written since the
+ * previous page, for rows the client already received, and are accepted below the tombstone horizon as long as the
+ * horizon has not moved since the snapshot started (tombstones purged before then are of rows the snapshot never
+ * sent). Otherwise a snapshot whose first page ends below the horizon would restart forever.
+ */
+@ApplicationScoped
+public class SyncService {
+
+    private static final Logger logger = Logger.getLogger(SyncService.class);
+
+    @ConfigProperty(name = "sync.max-changes", defaultValue = "500")
+    int maxChanges;
+
+    @ConfigProperty(name = "sync.tombstone-retention", defaultValue = "90D")
+    Duration tombstoneRetention;
+
+    public SyncDto changesSince(Long userId, SyncToken since) {
+        TenantVersion tenant = TenantVersion.findByUserId(userId);
+        long current = tenant != null ? tenant.version : 0;
+        long horizon = tenant != null ? tenant.tombstoneHorizon : 0;
+
+        // Tokens older than the purged tombstones (or from another database) cannot be patched up
+        boolean reset = since == null || since.version() > current
+                || (since.isSnapshot() ? since.snapshotHorizon() != horizon : since.version() < horizon);
+        long after = reset ? -1 : since.version();
+        Long snapshotHorizon = reset ? Long.valueOf(horizon) : since != null ? since.snapshotHorizon() : null;
+
+        long upTo = current;
+        upTo = pageBound(Invoice.findChangeSeqAt(userId, after, upTo, maxChanges),
+                Invoice.findChangeSeqAt(userId, after, upTo, 0), upTo);
+        upTo = pageBound(Client.findChangeSeqAt(userId, after, upTo, maxChanges),
+                Client.findChangeSeqAt(userId, after, upTo, 0), upTo);
+
+        SyncDto sync = new SyncDto();
+        sync.invoices = Invoice.findChangedBetween(userId, after, upTo).stream()
+                .map(InvoiceDto::fromEntity)
+                .collect(Collectors.toList());
+        sync.clients = Client.findChangedBetween(userId, after, upTo).stream()
+                .map(ClientDto::fromEntity)
+                .collect(Collectors.toList());
+        sync.deletedInvoiceIds = new ArrayList<>();
+        sync.deletedClientIds = new ArrayList<>();
+        if (!reset) {
+            for (SyncTombstone tombstone : SyncTombstone.findBetween(userId, after, upTo)) {
+                List<Long> ids = tombstone.entityType == SyncTombstone.EntityType.INVOICE
+                        ? sync.deletedInvoiceIds : sync.deletedClientIds;
+                ids.add(tombstone.entityId);
+            }
+        }
+        sync.hasMore = upTo < current;
+        sync.token = new SyncToken(upTo, sync.hasMore ? snapshotHorizon : null).encode();
+        sync.reset = reset;
+        return sync;
+    }
+
+    /**
+     * Narrows the page to the versions before the first row past the limit. Rows sharing a version are never split,
+     * so when the first maxChanges + 1 rows all share one, that version is returned whole.
+     */
+    private static long pageBound(Long firstBeyondLimit, Long first, long upTo) {
+        if (firstBeyondLimit == null) {
+            return upTo;
+        }
+        return first.equals(firstBeyondLimit) ? firstBeyondLimit : firstBeyondLimit - 1;
+    }
+
+    @Scheduled(cron = "0 30 3 * * ?", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    void purgeTombstones() {
+        int purged = SyncTombstone.purgeDeletedBefore(LocalDateTime.now().minus(tombstoneRetention));
+        if (purged > 0) {
+            logger.infof("Purged %d sync tombstones older than %s", purged, tombstoneRetention);
+        }
+    }
+}
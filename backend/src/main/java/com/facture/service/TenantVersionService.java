@@ -0,0 +1,74 @@
+package com.facture.service;
+
+import com.facture.entity.TenantVersion;
+import com.facture.exception.PreconditionFailedException;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.PersistenceException;
+import jakarta.ws.rs.core.EntityTag;
+
+/**
+ * Strong ETags for everything a user reads through the invoice and client APIs. The tag is the user's
+ * {@link TenantVersion}, so checking it costs one primary-key lookup and no entity is loaded for a 304.
+ */
+@ApplicationScoped
+public class TenantVersionService {
+
+    public EntityTag entityTag(Long userId) {
+        return entityTag(userId, TenantVersion.findVersion(userId));
+    }
+
+    /**
+     * Increments the user's version within the caller's transaction. When {@code ifMatch} (a raw If-Match header)
+     * is given, the current version must be one of the listed tags, otherwise the write is refused.
+     * The row lock keeps concurrent writes of the same user from both passing the check.
+     */
+    public long bump(Long userId, String ifMatch) {
+        TenantVersion version = TenantVersion.findForUpdate(userId);
+        if (version == null) {
+            create(userId);
+            version = TenantVersion.findForUpdate(userId);
+        }
+
+        if (ifMatch != null && !matches(ifMatch, "\"" + tagValue(userId, version.version) + "\"")) {
+            throw new PreconditionFailedException("The data has been modified since it was read");
+        }
+        version.version++;
+        return version.version;
+    }
+
+    private static EntityTag entityTag(Long userId, long version) {
+        return new EntityTag(tagValue(userId, version));
+    }
+
+    private static String tagValue(Long userId, long version) {
+        return userId + "." + version;
+    }
+
+    // If-Match uses the strong comparison: weak tags never match
+    private static boolean matches(String ifMatch, String expected) {
+        String header = ifMatch.trim();
+        if (header.equals("*")) {
+            return true;
+        }
+        for (String candidate : header.split(",")) {
+            if (candidate.trim().equals(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void create(Long userId) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                TenantVersion version = new TenantVersion();
+                version.userId = userId;
+                version.persist();
+                TenantVersion.flush();
+            });
+        } catch (PersistenceException e) {
+            // Created by a concurrent first write
+        }
+    }
+}
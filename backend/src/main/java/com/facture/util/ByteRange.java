@@ -0,0 +1,65 @@
+package com.facture.util;
+
+/**
+ * Single byte range parsed from an HTTP {@code Range} header (RFC 9110), resolved against a known length.
+ */
+public record ByteRange(long start, long end) {
+
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    private static final String UNIT_PREFIX = "bytes=";
+
+    /**
+     * Returns null when the header is absent or should be ignored (malformed or multiple ranges),
+     * in which case the full representation is sent.
+     */
+    public static ByteRange parse(String header, long length) {
+        if (header == null || !header.startsWith(UNIT_PREFIX)) {
+            return null;
+        }
+
+        String spec = header.substring(UNIT_PREFIX.length()).trim();
+        if (spec.contains(",")) {
+            return null;
+        }
+
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            if (end < start) {
+                return null;
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String contentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+}
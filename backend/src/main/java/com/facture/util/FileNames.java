@@ -0,0 +1,23 @@
+package com.facture.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Turns invoice numbers into names that are safe for ZIP entries, Content-Disposition headers and attachments.
+ * Numbers created before imports were validated may still hold separators, quotes or line breaks.
+ */
+public final class FileNames {
+
+    private static final Pattern UNSAFE = Pattern.compile("[^A-Za-z0-9._-]");
+    private static final Pattern LEADING_DOTS = Pattern.compile("^\\.+");
+
+    private FileNames() {
+    }
+
+    public static String safe(String name) {
+        if (name == null || name.isEmpty()) {
+            return "_";
+        }
+        return LEADING_DOTS.matcher(UNSAFE.matcher(name).replaceAll("_")).replaceFirst("_");
+    }
+}
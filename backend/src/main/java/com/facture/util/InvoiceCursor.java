@@ -0,0 +1,41 @@
+package com.facture.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in the invoice list: the (issueDate, id) of the last invoice of the previous page.
+ * Encoded as an opaque URL-safe token so clients do not depend on its layout.
+ */
+public record InvoiceCursor(LocalDate issueDate, long id) {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Returns null for a missing cursor (first page); throws IllegalArgumentException for a malformed one.
+     */
+    public static InvoiceCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new InvoiceCursor(LocalDate.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String value = issueDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
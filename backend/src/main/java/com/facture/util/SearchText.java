@@ -0,0 +1,47 @@
+package com.facture.util;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Accent and case folding for search, so "Societe" finds "Société" and "oeuvre" finds "Œuvre".
+ * Matches what PostgreSQL's {@code lower(unaccent(...))} produces for French text.
+ */
+public final class SearchText {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SearchText() {
+    }
+
+    public static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        String folded = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace("œ", "oe").replace("Œ", "OE")
+                .replace("æ", "ae").replace("Æ", "AE")
+                .replace("ß", "ss");
+        return WHITESPACE.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    public static String of(String... parts) {
+        return Arrays.stream(parts)
+                .filter(Objects::nonNull)
+                .map(SearchText::normalize)
+                .filter(part -> !part.isEmpty())
+                .collect(Collectors.joining(" "));
+    }
+
+    public static List<String> tokens(String query) {
+        String normalized = normalize(query);
+        return normalized.isEmpty() ? List.of() : List.of(WHITESPACE.split(normalized));
+    }
+}
@@ -0,0 +1,64 @@
+package com.facture.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a client in the delta sync: the tenant version its local copy is up to date with.
+ * Encoded as an opaque URL-safe token so clients do not depend on its layout.
+ * <p>
+ * A token handed out in the middle of a full snapshot also carries the tombstone horizon at the start of the
+ * snapshot ({@code snapshotHorizon}, null otherwise): the next pages continue the snapshot as long as no tombstone
+ * has been purged since, even if the token itself is below the horizon.
+ */
+public record SyncToken(long version, Long snapshotHorizon) {
+
+    private static final String PREFIX = "v";
+    private static final String SNAPSHOT_PREFIX = "s";
+    private static final String SEPARATOR = ".";
+
+    public SyncToken(long version) {
+        this(version, null);
+    }
+
+    public boolean isSnapshot() {
+        return snapshotHorizon != null;
+    }
+
+    /**
+     * Returns null for a missing token (full sync); throws IllegalArgumentException for a malformed one.
+     */
+    public static SyncToken decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+
+        String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        try {
+            if (value.startsWith(PREFIX)) {
+                return new SyncToken(parseVersion(value.substring(PREFIX.length())));
+            }
+            int separator = value.indexOf(SEPARATOR);
+            if (value.startsWith(SNAPSHOT_PREFIX) && separator > 0) {
+                return new SyncToken(parseVersion(value.substring(SNAPSHOT_PREFIX.length(), separator)),
+                        parseVersion(value.substring(separator + 1)));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sync token", e);
+        }
+        throw new IllegalArgumentException("Invalid sync token");
+    }
+
+    public String encode() {
+        String value = isSnapshot() ? SNAPSHOT_PREFIX + version + SEPARATOR + snapshotHorizon : PREFIX + version;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long parseVersion(String value) {
+        long version = Long.parseLong(value);
+        if (version < 0) {
+            throw new IllegalArgumentException("Invalid sync token");
+        }
+        return version;
+    }
+}
@@ -0,0 +1,7 @@
+-- Transactional email (OTP, invoices) is claimed ahead of bulk reminders: 0 = transactional, 1 = bulk
+alter table email_outbox add column priority smallint not null default 0;
+
+update email_outbox set priority = 1 where reminder_id is not null;
+
+drop index idx_email_outbox_pending;
+create index idx_email_outbox_pending on email_outbox (priority, next_attempt_at) where status = 'PENDING';
@@ -0,0 +1,95 @@
+-- Schema as previously created by hibernate-orm.database.generation=update
+
+create table users (
+    id bigint generated by default as identity,
+    email varchar(255) not null,
+    password_hash varchar(255),
+    google_id varchar(255),
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    company_name varchar(255),
+    siret varchar(14),
+    address_street varchar(255),
+    address_city varchar(255),
+    address_postal_code varchar(255),
+    address_country varchar(255),
+    phone varchar(255),
+    iban varchar(255),
+    bic varchar(255),
+    otp_secret varchar(255),
+    otp_expiry timestamp(6),
+    created_at timestamp(6) not null,
+    updated_at timestamp(6),
+    primary key (id),
+    constraint uk_users_email unique (email),
+    constraint uk_users_google_id unique (google_id)
+);
+
+create table clients (
+    id bigint generated by default as identity,
+    user_id bigint not null,
+    company_name varchar(255) not null,
+    contact_name varchar(255),
+    email varchar(255) not null,
+    phone varchar(255),
+    address_street varchar(255),
+    address_city varchar(255),
+    address_postal_code varchar(255),
+    address_country varchar(255),
+    siret varchar(14),
+    tva_number varchar(255),
+    notes varchar(1000),
+    created_at timestamp(6) not null,
+    updated_at timestamp(6),
+    primary key (id),
+    constraint fk_clients_user foreign key (user_id) references users
+);
+
+create table invoices (
+    id bigint generated by default as identity,
+    user_id bigint not null,
+    client_id bigint not null,
+    invoice_number varchar(255) not null,
+    status varchar(255) not null check (status in ('DRAFT', 'SENT', 'PAID', 'OVERDUE', 'CANCELLED')),
+    issue_date date not null,
+    due_date date not null,
+    paid_date date,
+    subtotal numeric(10, 2) not null,
+    tax_rate numeric(5, 2) not null,
+    tax_amount numeric(10, 2) not null,
+    total numeric(10, 2) not null,
+    currency varchar(3) not null,
+    notes varchar(2000),
+    payment_terms varchar(500),
+    created_at timestamp(6) not null,
+    updated_at timestamp(6),
+    primary key (id),
+    constraint uk_invoices_invoice_number unique (invoice_number),
+    constraint fk_invoices_user foreign key (user_id) references users,
+    constraint fk_invoices_client foreign key (client_id) references clients
+);
+
+create table invoice_items (
+    id bigint generated by default as identity,
+    invoice_id bigint not null,
+    description varchar(500) not null,
+    quantity numeric(10, 2) not null,
+    unit_price numeric(10, 2) not null,
+    tax_rate numeric(5, 2) not null,
+    amount numeric(10, 2) not null,
+    order_index integer,
+    primary key (id),
+    constraint fk_invoice_items_invoice foreign key (invoice_id) references invoices
+);
+
+create table reminders (
+    id bigint generated by default as identity,
+    invoice_id bigint not null,
+    type varchar(255) not null check (type in ('AUTO', 'MANUAL')),
+    sent_at timestamp(6) not null,
+    sent_by varchar(255),
+    message varchar(2000),
+    status varchar(255) not null check (status in ('SENT', 'FAILED')),
+    primary key (id),
+    constraint fk_reminders_invoice foreign key (invoice_id) references invoices
+);
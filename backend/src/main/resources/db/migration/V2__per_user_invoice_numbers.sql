@@ -0,0 +1,30 @@
+-- Invoice numbers are allocated per user and per month (InvoiceNumberAllocator)
+
+create table if not exists invoice_number_counters (
+    id bigint generated by default as identity,
+    user_id bigint not null,
+    period varchar(7) not null,
+    next_value bigint not null,
+    primary key (id),
+    constraint uk_invoice_number_counters_user_period unique (user_id, period),
+    constraint fk_invoice_number_counters_user foreign key (user_id) references users
+);
+
+-- Replace whichever unique constraints cover invoice_number (generated names on auto-updated databases)
+do $$
+declare
+    existing_constraint text;
+begin
+    for existing_constraint in
+        select c.conname
+        from pg_constraint c
+        join pg_attribute a on a.attrelid = c.conrelid and a.attnum = any (c.conkey)
+        where c.conrelid = 'invoices'::regclass
+          and c.contype = 'u'
+          and a.attname = 'invoice_number'
+    loop
+        execute format('alter table invoices drop constraint %I', existing_constraint);
+    end loop;
+end $$;
+
+alter table invoices add constraint uk_invoices_user_invoice_number unique (user_id, invoice_number);
@@ -0,0 +1,11 @@
+-- Keyset pages of GET /api/invoices, newest first, with and without a status filter
+create index idx_invoices_user_issue_date on invoices (user_id, issue_date desc, id desc);
+create index idx_invoices_user_status_issue_date on invoices (user_id, status, issue_date desc, id desc);
+
+-- Overdue detection only ever looks at sent invoices past their due date
+create index idx_invoices_sent_due_date on invoices (due_date) where status = 'SENT';
+
+create index idx_invoices_client on invoices (client_id);
+create index idx_clients_user on clients (user_id);
+create index idx_invoice_items_invoice on invoice_items (invoice_id, order_index);
+create index idx_reminders_invoice on reminders (invoice_id);
@@ -0,0 +1,12 @@
+-- Accent-insensitive client search: Client.searchText holds the folded company name, contact name and email
+create extension if not exists pg_trgm;
+create extension if not exists btree_gin;
+create extension if not exists unaccent;
+
+alter table clients add column search_text varchar(1000);
+
+update clients
+set search_text = trim(regexp_replace(lower(unaccent(concat_ws(' ', company_name, contact_name, email))), '\s+', ' ', 'g'));
+
+-- Serves "user_id = ? and search_text like '%...%'" for terms of three characters or more
+create index idx_clients_user_search_text_trgm on clients using gin (user_id, search_text gin_trgm_ops);
@@ -0,0 +1,10 @@
+-- Per-user data version behind the ETags of the invoice and client APIs
+create table tenant_versions (
+    user_id bigint not null,
+    version bigint not null,
+    primary key (user_id),
+    constraint fk_tenant_versions_user foreign key (user_id) references users
+);
+
+insert into tenant_versions (user_id, version)
+select id, 0 from users;
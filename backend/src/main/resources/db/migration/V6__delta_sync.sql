@@ -0,0 +1,34 @@
+-- Delta sync: rows carry the tenant version of their last write, deletes leave tombstones
+alter table invoices add column change_seq bigint not null default 0;
+alter table clients add column change_seq bigint not null default 0;
+alter table tenant_versions add column tombstone_horizon bigint not null default 0;
+
+-- Existing rows get distinct versions per user (clients first) so the first full sync can be paged
+update clients c
+set change_seq = v.version + n.seq
+from (select id, row_number() over (partition by user_id order by id) as seq from clients) n, tenant_versions v
+where c.id = n.id and v.user_id = c.user_id;
+
+update invoices i
+set change_seq = v.version + n.seq + (select count(*) from clients c where c.user_id = i.user_id)
+from (select id, row_number() over (partition by user_id order by id) as seq from invoices) n, tenant_versions v
+where i.id = n.id and v.user_id = i.user_id;
+
+update tenant_versions v
+set version = v.version
+    + (select count(*) from clients c where c.user_id = v.user_id)
+    + (select count(*) from invoices i where i.user_id = v.user_id);
+
+create table sync_tombstones (
+    id bigserial primary key,
+    user_id bigint not null,
+    entity_type varchar(16) not null,
+    entity_id bigint not null,
+    change_seq bigint not null,
+    deleted_at timestamp not null
+);
+
+create index idx_invoices_user_change_seq on invoices (user_id, change_seq);
+create index idx_clients_user_change_seq on clients (user_id, change_seq);
+create index idx_sync_tombstones_user_change_seq on sync_tombstones (user_id, change_seq);
+create index idx_sync_tombstones_deleted_at on sync_tombstones (deleted_at);
@@ -0,0 +1,19 @@
+-- Automatic reminders: per-user escalation offsets and one AUTO reminder per invoice and step
+create table reminder_settings (
+    user_id bigint not null,
+    enabled boolean not null,
+    offset_days varchar(64) not null,
+    primary key (user_id),
+    constraint fk_reminder_settings_user foreign key (user_id) references users
+);
+
+alter table reminders add column step integer;
+
+alter table reminders drop constraint if exists reminders_status_check;
+alter table reminders add constraint reminders_status_check check (status in ('PENDING', 'SENT', 'FAILED'));
+
+-- Also what keeps two nodes from recording the same step twice
+create unique index uk_reminders_invoice_auto_step on reminders (invoice_id, step) where type = 'AUTO';
+
+-- Keyset scan of the reminder run
+create index idx_invoices_overdue_id on invoices (id) where status = 'OVERDUE';
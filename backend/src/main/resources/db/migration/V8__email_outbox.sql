@@ -0,0 +1,23 @@
+-- Transactional email outbox, delivered by background workers with retries
+create table email_outbox (
+    id bigint generated by default as identity,
+    recipient varchar(320) not null,
+    subject varchar(500) not null,
+    html_body text not null,
+    attachment_name varchar(255),
+    attachment_content_type varchar(100),
+    attachment bytea,
+    reminder_id bigint,
+    status varchar(16) not null check (status in ('PENDING', 'SENDING', 'SENT', 'DEAD')),
+    attempts integer not null,
+    next_attempt_at timestamp(6) not null,
+    claimed_at timestamp(6),
+    sent_at timestamp(6),
+    last_error varchar(2000),
+    created_at timestamp(6) not null,
+    primary key (id)
+);
+
+create index idx_email_outbox_pending on email_outbox (next_attempt_at) where status = 'PENDING';
+create index idx_email_outbox_sending on email_outbox (claimed_at) where status = 'SENDING';
+create index idx_email_outbox_sent on email_outbox (sent_at) where status = 'SENT';
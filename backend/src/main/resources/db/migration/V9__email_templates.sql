@@ -0,0 +1,12 @@
+-- Per-user overrides of the invoice and reminder emails (Qute templates)
+create table email_templates (
+    id bigint generated by default as identity,
+    user_id bigint not null,
+    kind varchar(16) not null check (kind in ('INVOICE', 'REMINDER')),
+    subject varchar(500) not null,
+    body text not null,
+    updated_at timestamp(6) not null,
+    primary key (id),
+    constraint uk_email_templates_user_kind unique (user_id, kind),
+    constraint fk_email_templates_user foreign key (user_id) references users
+);
@@ -0,0 +1,145 @@
+package com.facture;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server the mailer is pointed at. Recipients at {@value #REJECTED_DOMAIN} are refused with
+ * a 550, messages to {@value #SLOW_DOMAIN} are acknowledged after {@value #SLOW_DELAY_MS} ms; everything else is
+ * accepted and kept in {@link #messages()}.
+ */
+public class SmtpTestServer implements QuarkusTestResourceLifecycleManager {
+
+    public static final String REJECTED_DOMAIN = "reject.test";
+    public static final String SLOW_DOMAIN = "slow.test";
+    public static final long SLOW_DELAY_MS = 1500;
+
+    public record Message(List<String> recipients, String data) {
+    }
+
+    private static final List<Message> messages = new CopyOnWriteArrayList<>();
+    private static final AtomicInteger connections = new AtomicInteger();
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+
+    public static List<Message> messages() {
+        return messages;
+    }
+
+    public static int connections() {
+        return connections.get();
+    }
+
+    @Override
+    public Map<String, String> start() {
+        try {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start the test SMTP server", e);
+        }
+        executor = Executors.newCachedThreadPool();
+        executor.execute(this::accept);
+
+        return Map.of(
+                "quarkus.mailer.mock", "false",
+                "quarkus.mailer.host", serverSocket.getInetAddress().getHostAddress(),
+                "quarkus.mailer.port", String.valueOf(serverSocket.getLocalPort()),
+                "quarkus.mailer.start-tls", "DISABLED");
+    }
+
+    @Override
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private static void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 localhost ESMTP test");
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase(Locale.ROOT) : line;
+                switch (command) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "MAIL", "NOOP" -> reply(out, "250 OK");
+                    case "RSET" -> {
+                        recipients.clear();
+                        reply(out, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        String recipient = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                        if (recipient.endsWith("@" + REJECTED_DOMAIN)) {
+                            reply(out, "550 5.1.1 Mailbox unavailable");
+                        } else {
+                            recipients.add(recipient);
+                            reply(out, "250 OK");
+                        }
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder data = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            data.append(line).append("\r\n");
+                        }
+                        if (recipients.stream().anyMatch(recipient -> recipient.endsWith("@" + SLOW_DOMAIN))) {
+                            Thread.sleep(SLOW_DELAY_MS);
+                        }
+                        messages.add(new Message(List.copyOf(recipients), data.toString()));
+                        recipients.clear();
+                        reply(out, "250 OK queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
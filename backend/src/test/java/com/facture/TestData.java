@@ -0,0 +1,70 @@
+package com.facture;
+
+import com.facture.dto.ClientDto;
+import com.facture.dto.CreateClientRequest;
+import com.facture.dto.CreateInvoiceRequest;
+import com.facture.dto.InvoiceItemDto;
+import com.facture.entity.User;
+import com.facture.service.ClientService;
+import com.facture.service.JwtService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Fixtures for the integration tests: every user is new, so tests do not see each other's rows.
+ */
+@ApplicationScoped
+public class TestData {
+
+    @Inject
+    ClientService clientService;
+
+    @Inject
+    JwtService jwtService;
+
+    @Transactional
+    public Long user() {
+        User user = new User();
+        user.email = "user-" + UUID.randomUUID() + "@example.com";
+        user.firstName = "Test";
+        user.lastName = "User";
+        user.companyName = "Test SARL";
+        user.persist();
+        return user.id;
+    }
+
+    public Long client(Long userId) {
+        CreateClientRequest request = new CreateClientRequest();
+        request.companyName = "Client " + UUID.randomUUID();
+        request.email = "client@example.com";
+        ClientDto client = clientService.createClient(userId, request);
+        return client.id;
+    }
+
+    public String token(Long userId) {
+        return jwtService.generateAccessToken(userId, "user-" + userId + "@example.com");
+    }
+
+    public static CreateInvoiceRequest invoiceRequest(Long clientId, LocalDate issueDate, int lines) {
+        CreateInvoiceRequest request = new CreateInvoiceRequest();
+        request.clientId = clientId;
+        request.issueDate = issueDate;
+        request.dueDate = issueDate.plusDays(30);
+        request.items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            InvoiceItemDto item = new InvoiceItemDto();
+            item.description = "Line " + i;
+            item.quantity = BigDecimal.ONE;
+            item.unitPrice = new BigDecimal("100.00");
+            item.taxRate = new BigDecimal("20.00");
+            request.items.add(item);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,151 @@
+package com.facture.entity;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plans of the hot queries against a seeded dataset: each must use the index the migrations made for it rather
+ * than a sequential scan. The SQL mirrors what the entity queries generate.
+ */
+@QuarkusTest
+class QueryIndexTest {
+
+    private static final int USERS = 20;
+    private static final int CLIENTS_PER_USER = 2000;
+    private static final int INVOICES_PER_CLIENT = 2;
+
+    @Inject
+    EntityManager entityManager;
+
+    // Seeded once for the class
+    private static Long userId;
+    private static long clientId;
+    private static long invoiceId;
+
+    @BeforeEach
+    void seed() {
+        if (userId != null) {
+            return;
+        }
+        String prefix = "explain-" + UUID.randomUUID();
+        QuarkusTransaction.requiringNew().run(() -> {
+            execute("insert into users (email, first_name, last_name, created_at)"
+                    + " select '" + prefix + "-' || n || '@example.com', 'Seed', 'User', now()"
+                    + " from generate_series(1, " + USERS + ") n");
+            execute("insert into clients (user_id, company_name, email, search_text, created_at, change_seq)"
+                    + " select u.id, 'Client ' || n, 'client@example.com', 'client ' || n || ' ' || md5(u.id || '-' || n), now(), n"
+                    + " from users u cross join generate_series(1, " + CLIENTS_PER_USER + ") n"
+                    + " where u.email like '" + prefix + "-%'");
+            // Mostly paid history, a few sent invoices: the shape of a real ledger
+            execute("insert into invoices (user_id, client_id, invoice_number, status, issue_date, due_date,"
+                    + " subtotal, tax_rate, tax_amount, total, currency, created_at, change_seq)"
+                    + " select c.user_id, c.id, 'SEED-' || c.id || '-' || n,"
+                    + " case when (c.id + n) % 50 = 0 then 'SENT' when (c.id + n) % 7 = 0 then 'DRAFT' else 'PAID' end,"
+                    + " date '2020-01-01' + (c.id % 1000)::int, date '2020-01-31' + (c.id % 1000)::int,"
+                    + " 100, 20, 20, 120, 'EUR', now(), n"
+                    + " from clients c cross join generate_series(1, " + INVOICES_PER_CLIENT + ") n"
+                    + " join users u on u.id = c.user_id where u.email like '" + prefix + "-%'");
+            execute("insert into invoice_items (invoice_id, description, quantity, unit_price, tax_rate, amount, order_index)"
+                    + " select i.id, 'Line ' || n, 1, 100, 20, 100, n"
+                    + " from invoices i cross join generate_series(0, 1) n where i.invoice_number like 'SEED-%'"
+                    + " and i.user_id in (select id from users where email like '" + prefix + "-%')");
+            execute("insert into reminders (invoice_id, type, sent_at, status)"
+                    + " select i.id, 'MANUAL', now(), 'SENT' from invoices i where i.status = 'SENT'"
+                    + " and i.user_id in (select id from users where email like '" + prefix + "-%')");
+        });
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (String table : List.of("users", "clients", "invoices", "invoice_items", "reminders")) {
+                execute("analyze " + table);
+            }
+            userId = ((Number) single("select min(id) from users where email like '" + prefix + "-%'")).longValue();
+            clientId = ((Number) single("select min(id) from clients where user_id = " + userId)).longValue();
+            invoiceId = ((Number) single("select min(id) from invoices where user_id = " + userId
+                    + " and status = 'SENT'")).longValue();
+        });
+    }
+
+    @Test
+    void clientSearchUsesTheTrigramIndex() {
+        String fragment = (String) QuarkusTransaction.requiringNew().call(() ->
+                single("select substr(md5(" + userId + " || '-42'), 3, 8)"));
+
+        String plan = explain("select * from clients c where c.user_id = " + userId
+                + " and c.search_text like '%" + fragment + "%' escape '\\'"
+                + " order by case when c.search_text like '" + fragment + "%' escape '\\' then 0 else 1 end,"
+                + " c.company_name, c.id limit 20");
+
+        assertUses(plan, "idx_clients_user_search_text_trgm");
+        assertNoSeqScan(plan, "clients");
+    }
+
+    @Test
+    void invoicePagesUseTheKeysetIndexes() {
+        String page = explain("select i.id from invoices i where i.user_id = " + userId
+                + " order by i.issue_date desc, i.id desc limit 51");
+        assertUses(page, "idx_invoices_user_issue_date");
+        assertNoSeqScan(page, "invoices");
+
+        String pageByStatus = explain("select i.id from invoices i where i.user_id = " + userId
+                + " and i.status = 'SENT' order by i.issue_date desc, i.id desc limit 51");
+        assertUses(pageByStatus, "idx_invoices_user_status_issue_date");
+        assertNoSeqScan(pageByStatus, "invoices");
+    }
+
+    @Test
+    void overdueSweepUsesThePartialIndex() {
+        String plan = explain("select i.id, i.user_id from invoices i where i.status = 'SENT'"
+                + " and i.due_date < date '2021-01-01' and i.paid_date is null order by i.due_date, i.id limit 1000");
+
+        assertUses(plan, "idx_invoices_sent_due_date");
+        assertNoSeqScan(plan, "invoices");
+    }
+
+    @Test
+    void childRowsAreReadThroughTheirForeignKeyIndexes() {
+        String items = explain("select * from invoice_items where invoice_id = " + invoiceId + " order by order_index");
+        assertUses(items, "idx_invoice_items_invoice");
+
+        String reminders = explain("select * from reminders where invoice_id = " + invoiceId);
+        assertUses(reminders, "idx_reminders_invoice");
+
+        String clientInvoices = explain("select id from invoices where client_id = " + clientId);
+        assertUses(clientInvoices, "idx_invoices_client");
+
+        String clients = explain("select * from clients where user_id = " + userId);
+        assertNoSeqScan(clients, "clients");
+    }
+
+    private String explain(String sql) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            List<?> rows = entityManager.createNativeQuery("explain " + sql).getResultList();
+            return rows.stream().map(String::valueOf).collect(Collectors.joining("\n"));
+        });
+    }
+
+    private void execute(String sql) {
+        entityManager.createNativeQuery(sql).executeUpdate();
+    }
+
+    private Object single(String sql) {
+        return entityManager.createNativeQuery(sql).getSingleResult();
+    }
+
+    private static void assertUses(String plan, String index) {
+        assertTrue(plan.contains(index), () -> "Expected " + index + " in plan:\n" + plan);
+    }
+
+    private static void assertNoSeqScan(String plan, String table) {
+        assertFalse(plan.contains("Seq Scan on " + table), () -> "Unexpected sequential scan in plan:\n" + plan);
+    }
+}
@@ -0,0 +1,64 @@
+package com.facture.resource;
+
+import com.facture.TestData;
+import com.facture.service.InvoiceService;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@QuarkusTest
+class InvoiceResourceTest {
+
+    @Inject
+    InvoiceService invoiceService;
+
+    @Inject
+    TestData testData;
+
+    @Test
+    void staleIfMatchIsRefusedAndCurrentOneAccepted() {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        Long invoiceId = invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, LocalDate.of(2026, 5, 4), 1)).id;
+        String token = testData.token(userId);
+
+        String stale = etag(token, invoiceId);
+        given().auth().oauth2(token).header("If-None-Match", stale)
+                .when().get("/api/invoices/{id}", invoiceId)
+                .then().statusCode(304);
+
+        // Any write by the user moves the tag on
+        given().auth().oauth2(token).contentType("application/json").body(body(clientId, "Before"))
+                .when().put("/api/invoices/{id}", invoiceId)
+                .then().statusCode(200);
+        String current = etag(token, invoiceId);
+        assertNotEquals(stale, current);
+
+        given().auth().oauth2(token).contentType("application/json").header("If-Match", stale).body(body(clientId, "Lost"))
+                .when().put("/api/invoices/{id}", invoiceId)
+                .then().statusCode(412);
+        given().auth().oauth2(token).contentType("application/json").header("If-Match", current).body(body(clientId, "After"))
+                .when().put("/api/invoices/{id}", invoiceId)
+                .then().statusCode(200)
+                .body("items[0].description", equalTo("After"));
+    }
+
+    private static String etag(String token, Long invoiceId) {
+        return given().auth().oauth2(token)
+                .when().get("/api/invoices/{id}", invoiceId)
+                .then().statusCode(200)
+                .extract().header("ETag");
+    }
+
+    private static String body(Long clientId, String description) {
+        return "{\"clientId\": " + clientId + ", \"issueDate\": \"2026-05-04\", \"dueDate\": \"2026-06-03\","
+                + " \"items\": [{\"description\": \"" + description + "\", \"quantity\": 1, \"unitPrice\": 100.00,"
+                + " \"taxRate\": 20.00}]}";
+    }
+}
@@ -0,0 +1,119 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.entity.OutboxEmail;
+import io.quarkus.mailer.Mail;
+import io.quarkus.mailer.MockMailbox;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class EmailOutboxDispatcherTest {
+
+    private static final long TIMEOUT_MS = 20_000;
+
+    @Inject
+    EmailService emailService;
+
+    @Inject
+    MockMailbox mailbox;
+
+    @Inject
+    TestData testData;
+
+    @Test
+    void queuedEmailIsDeliveredAfterCommit() throws InterruptedException {
+        String to = recipient();
+        QuarkusTransaction.requiringNew().run(() -> emailService.sendOtpEmail(to, "123456", "Jeanne"));
+
+        OutboxEmail email = awaitStatus(to, OutboxEmail.Status.SENT);
+        assertEquals(1, email.attempts);
+        List<Mail> sent = mailbox.getMailsSentTo(to);
+        assertEquals(1, sent.size());
+        assertTrue(sent.get(0).getHtml().contains("123456"));
+    }
+
+    @Test
+    void rolledBackEmailIsNeverQueued() {
+        String to = recipient();
+        assertThrows(IllegalStateException.class, () -> QuarkusTransaction.requiringNew().run(() -> {
+            emailService.sendOtpEmail(to, "123456", "Jeanne");
+            throw new IllegalStateException("Login failed after the email was queued");
+        }));
+
+        assertEquals(0, QuarkusTransaction.requiringNew().call(() -> OutboxEmail.count("recipient", to)));
+        assertTrue(mailbox.getMailsSentTo(to) == null || mailbox.getMailsSentTo(to).isEmpty());
+    }
+
+    @Test
+    void staleClaimIsDeliveredAgain() throws InterruptedException {
+        String to = recipient();
+        // Left SENDING by a worker that died before recording the outcome
+        QuarkusTransaction.requiringNew().run(() -> {
+            OutboxEmail email = new OutboxEmail();
+            email.recipient = to;
+            email.subject = "Stale";
+            email.htmlBody = "<p>Stale</p>";
+            email.status = OutboxEmail.Status.SENDING;
+            email.claimedAt = LocalDateTime.now().minusHours(1);
+            email.persist();
+        });
+
+        awaitStatus(to, OutboxEmail.Status.SENT);
+        assertEquals(1, mailbox.getMailsSentTo(to).size());
+    }
+
+    @Test
+    void otpOvertakesQueuedReminders() throws InterruptedException {
+        Long userId = testData.user();
+        List<String> reminders = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            reminders.add(recipient());
+        }
+        // Six seconds of sends at the configured rate
+        QuarkusTransaction.requiringNew().run(() -> reminders.forEach(to ->
+                emailService.sendReminderEmail(userId, to, "Client", "FACT-2026-10-00001", 10, null)));
+        String otp = recipient();
+        QuarkusTransaction.requiringNew().run(() -> emailService.sendOtpEmail(otp, "123456", "Jeanne"));
+
+        awaitStatus(otp, OutboxEmail.Status.SENT);
+        long remindersSent = QuarkusTransaction.requiringNew().call(() ->
+                OutboxEmail.count("recipient in ?1 and status = ?2", reminders, OutboxEmail.Status.SENT));
+        assertTrue(remindersSent < reminders.size() / 2, remindersSent + " reminders went first");
+
+        for (String to : reminders) {
+            awaitStatus(to, OutboxEmail.Status.SENT);
+        }
+    }
+
+    private static OutboxEmail awaitStatus(String recipient, OutboxEmail.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            OutboxEmail email = QuarkusTransaction.requiringNew()
+                    .call(() -> OutboxEmail.<OutboxEmail>find("recipient", recipient).firstResult());
+            if (email != null && email.status == status) {
+                return email;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Email to " + recipient + " is " + (email != null ? email.status : "missing")
+                        + ", expected " + status);
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static String recipient() {
+        return "client-" + UUID.randomUUID() + "@example.com";
+    }
+}
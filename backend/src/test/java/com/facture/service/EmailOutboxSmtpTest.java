@@ -0,0 +1,124 @@
+package com.facture.service;
+
+import com.facture.SmtpTestServer;
+import com.facture.entity.OutboxEmail;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Outbox delivery through the real mailer against {@link SmtpTestServer}.
+ */
+@QuarkusTest
+@TestProfile(EmailOutboxSmtpTest.Profile.class)
+class EmailOutboxSmtpTest {
+
+    private static final long TIMEOUT_MS = 40_000;
+
+    public static class Profile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // A send may only start in the first 3 seconds of a claim
+            return Map.of(
+                    "email.outbox.claim-timeout", "10S",
+                    "email.outbox.send-timeout", "2S",
+                    "email.outbox.max-per-domain", "1",
+                    "email.outbox.rate-per-second", "1000",
+                    "email.outbox.poll-interval", "PT0.2S",
+                    "email.outbox.max-attempts", "2",
+                    "email.outbox.backoff.initial", "PT0.1S",
+                    "email.outbox.backoff.max", "1S");
+        }
+
+        @Override
+        public List<TestResourceEntry> testResources() {
+            return List.of(new TestResourceEntry(SmtpTestServer.class));
+        }
+    }
+
+    @Inject
+    EmailService emailService;
+
+    @Test
+    void emailsAreDeliveredOnceOverReusedConnections() throws InterruptedException {
+        List<String> recipients = queue("example.com", 10);
+        int connectionsBefore = SmtpTestServer.connections();
+
+        for (String recipient : recipients) {
+            assertEquals(1, awaitStatus(recipient, OutboxEmail.Status.SENT).attempts);
+            assertEquals(1, received(recipient));
+        }
+        assertTrue(SmtpTestServer.connections() - connectionsBefore < recipients.size());
+    }
+
+    @Test
+    void refusedRecipientIsRetriedThenDead() throws InterruptedException {
+        String recipient = queue(SmtpTestServer.REJECTED_DOMAIN, 1).get(0);
+
+        OutboxEmail email = awaitStatus(recipient, OutboxEmail.Status.DEAD);
+        assertEquals(2, email.attempts);
+        assertTrue(email.lastError.contains("550"), email.lastError);
+        assertEquals(0, received(recipient));
+    }
+
+    @Test
+    void slowDomainNeverOutlivesItsClaim() throws InterruptedException {
+        // One batch of 8 sends of 1.5 s each, one at a time: 12 s, more than the claim timeout
+        List<String> recipients = queue(SmtpTestServer.SLOW_DOMAIN, 8);
+
+        for (String recipient : recipients) {
+            awaitStatus(recipient, OutboxEmail.Status.SENT);
+        }
+        // Room for a reclaimed copy to be sent again
+        Thread.sleep(2 * SmtpTestServer.SLOW_DELAY_MS);
+
+        for (String recipient : recipients) {
+            OutboxEmail email = awaitStatus(recipient, OutboxEmail.Status.SENT);
+            // Put back unattempted rather than reclaimed mid-send and delivered twice
+            assertEquals(1, email.attempts);
+            assertEquals(1, received(recipient));
+        }
+    }
+
+    private List<String> queue(String domain, int count) {
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            recipients.add("client-" + UUID.randomUUID() + "@" + domain);
+        }
+        // One transaction, so that a single claim takes them all
+        QuarkusTransaction.requiringNew().run(() -> recipients.forEach(to -> emailService.sendOtpEmail(to, "123456", "Jeanne")));
+        return recipients;
+    }
+
+    private static long received(String recipient) {
+        return SmtpTestServer.messages().stream().filter(message -> message.recipients().contains(recipient)).count();
+    }
+
+    private static OutboxEmail awaitStatus(String recipient, OutboxEmail.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            OutboxEmail email = QuarkusTransaction.requiringNew()
+                    .call(() -> OutboxEmail.<OutboxEmail>find("recipient", recipient).firstResult());
+            if (email != null && email.status == status) {
+                return email;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Email to " + recipient + " is " + (email != null ? email.status : "missing")
+                        + ", expected " + status);
+            }
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.dto.EmailTemplateDto;
+import com.facture.entity.EmailTemplate;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+class EmailTemplateServiceTest {
+
+    @Inject
+    EmailTemplateService emailTemplateService;
+
+    @Inject
+    TestData testData;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{#for i in clientName}x{/for}",
+            "{#each clientName}x{/each}",
+            "{#include EmailService/invoice /}",
+            "{#let name=clientName}{name}{/let}",
+            "{clientName.toUpperCase()}",
+            "{clientName ?: 'client'}",
+            "{inject:emailService}",
+            "{password}"})
+    void onlyVariablesAndIfSectionsAreAccepted(String body) {
+        Long userId = testData.user();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> emailTemplateService.updateTemplate(userId, EmailTemplate.Kind.REMINDER, template(body)));
+        assertEquals(0, error.getMessage().indexOf("Invalid email template"));
+    }
+
+    @Test
+    void variablesAndIfSectionsRenderEscaped() {
+        Long userId = testData.user();
+        emailTemplateService.updateTemplate(userId, EmailTemplate.Kind.REMINDER, template(
+                "<p>{clientName}, {#if daysOverdue > 30}dernier rappel{#else}rappel{/if} pour {invoiceNumber}</p>"));
+
+        EmailTemplateService.RenderedEmail email = emailTemplateService.render(userId, EmailTemplate.Kind.REMINDER,
+                Map.of("clientName", "Dupont & Fils", "invoiceNumber", "FACT-2026-10-00001", "daysOverdue", 45));
+
+        assertEquals("Relance FACT-2026-10-00001", email.subject());
+        assertEquals("<p>Dupont &amp; Fils, dernier rappel pour FACT-2026-10-00001</p>", email.body());
+    }
+
+    @Test
+    void oversizedRenderingFallsBackToTheDefault() {
+        Long userId = testData.user();
+        emailTemplateService.updateTemplate(userId, EmailTemplate.Kind.INVOICE, template("{clientName}".repeat(8000)));
+
+        // 8000 copies of a 255-character name
+        assertNull(emailTemplateService.render(userId, EmailTemplate.Kind.INVOICE,
+                Map.of("clientName", "x".repeat(255), "invoiceNumber", "FACT-2026-10-00001")));
+    }
+
+    @Test
+    void subjectThatMayOverflowTheOutboxIsRejected() {
+        Long userId = testData.user();
+        EmailTemplateDto template = template("<p>{clientName}</p>");
+        template.subject = "{clientName} - {invoiceNumber}";
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> emailTemplateService.updateTemplate(userId, EmailTemplate.Kind.REMINDER, template));
+        assertEquals(0, error.getMessage().indexOf("Invalid email template: the subject"));
+    }
+
+    @Test
+    void oversizedSubjectFallsBackToTheDefault() {
+        Long userId = testData.user();
+        EmailTemplateDto template = template("<p>{clientName}</p>");
+        // A branch the widest sample does not take
+        template.subject = "{#if daysOverdue == 7}{clientName} {clientName}{#else}Relance{/if}";
+        emailTemplateService.updateTemplate(userId, EmailTemplate.Kind.REMINDER, template);
+
+        assertEquals("Relance", emailTemplateService.render(userId, EmailTemplate.Kind.REMINDER,
+                Map.of("clientName", "x".repeat(255), "invoiceNumber", "FACT-2026-10-00001", "daysOverdue", 8)).subject());
+        assertNull(emailTemplateService.render(userId, EmailTemplate.Kind.REMINDER,
+                Map.of("clientName", "x".repeat(255), "invoiceNumber", "FACT-2026-10-00001", "daysOverdue", 7)));
+    }
+
+    private static EmailTemplateDto template(String body) {
+        EmailTemplateDto template = new EmailTemplateDto();
+        template.subject = "Relance {invoiceNumber}";
+        template.body = body;
+        return template;
+    }
+}
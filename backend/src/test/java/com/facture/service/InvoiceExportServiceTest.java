@@ -0,0 +1,63 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.dto.InvoiceDto;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+class InvoiceExportServiceTest {
+
+    @Inject
+    InvoiceExportService exportService;
+
+    @Inject
+    InvoiceService invoiceService;
+
+    @Inject
+    TestData testData;
+
+    @Test
+    void exportRendersEveryInvoiceOfThePeriod() throws IOException {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        LocalDate issueDate = LocalDate.of(2026, 3, 1);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            InvoiceDto invoice = invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, issueDate.plusDays(i), 2));
+            expected.add(invoice.invoiceNumber + "_factur-x.xml");
+        }
+        expected.add("manifest.json");
+
+        InvoiceExportService.ExportProgress progress = exportService.prepareExport(userId, issueDate, issueDate.plusDays(10),
+                null, InvoiceExportService.ExportFormat.FACTURX_XML);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        exportService.writeExport(progress, archive);
+
+        assertEquals(expected, entries(archive.toByteArray()));
+        assertEquals(5, exportService.getProgress(userId, progress.exportId).completed);
+    }
+
+    private static Set<String> entries(byte[] archive) throws IOException {
+        Set<String> names = new HashSet<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}
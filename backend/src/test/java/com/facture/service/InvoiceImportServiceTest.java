@@ -0,0 +1,107 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.dto.ImportReportDto;
+import com.facture.dto.InvoiceDto;
+import com.facture.util.FileNames;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class InvoiceImportServiceTest {
+
+    @Inject
+    InvoiceImportService invoiceImportService;
+
+    @Inject
+    InvoiceService invoiceService;
+
+    @Inject
+    TestData testData;
+
+    @Test
+    void importKeepsNumbersAndRejectsDuplicates() throws IOException {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        invoiceImportService.importInvoices(userId, input(line(clientId, "OLD-1")),
+                InvoiceImportReader.Format.JSON_LINES, false);
+
+        ImportReportDto report = invoiceImportService.importInvoices(userId,
+                input(line(clientId, "OLD-2"), line(clientId, "OLD-2"), line(clientId, "OLD-1"), line(clientId, null)),
+                InvoiceImportReader.Format.JSON_LINES, false);
+
+        assertEquals(4, report.total);
+        assertEquals(1, report.imported);
+        assertEquals(List.of(
+                "Duplicate invoice number OLD-2 in the import",
+                "Invoice number OLD-1 already exists",
+                "Invoice number is required (or import with allocateNumbers=true)"),
+                report.errors.stream().map(error -> error.message).sorted().toList());
+        assertEquals(List.of("OLD-1", "OLD-2"), numbers(userId));
+    }
+
+    @Test
+    void allocatedNumbersFollowImportedOnes() throws IOException {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        String prefix = "FACT-" + YearMonth.now() + "-";
+
+        ImportReportDto report = invoiceImportService.importInvoices(userId,
+                input(line(clientId, prefix + "00041"), line(clientId, null)),
+                InvoiceImportReader.Format.JSON_LINES, true);
+        InvoiceDto created = invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, LocalDate.now(), 1));
+
+        assertEquals(2, report.imported);
+        assertEquals(List.of(prefix + "00041", prefix + "00042", prefix + "00043"), numbers(userId));
+        assertEquals(prefix + "00043", created.invoiceNumber);
+    }
+
+    @Test
+    void numbersUnfitForFileNamesAreRejected() throws IOException {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+
+        ImportReportDto report = invoiceImportService.importInvoices(userId,
+                input(line(clientId, "../../etc/passwd"), line(clientId, ".hidden"), line(clientId, "A\\r\\nSet-Cookie: x"),
+                        line(clientId, "A\\\"B"), line(clientId, "OLD_2024-7.1")),
+                InvoiceImportReader.Format.JSON_LINES, false);
+
+        assertEquals(1, report.imported);
+        assertEquals(4, report.errors.size());
+        report.errors.forEach(error -> assertTrue(error.message.startsWith("invoiceNumber: "), error.message));
+        assertEquals(List.of("OLD_2024-7.1"), numbers(userId));
+    }
+
+    @Test
+    void fileNamesNeverCarrySeparatorsOrHeaderBreaks() {
+        assertEquals("__.._etc_passwd", FileNames.safe("../../etc/passwd"));
+        assertEquals("A__Set-Cookie__x_", FileNames.safe("A\r\nSet-Cookie: x\""));
+        assertEquals("FACT-2026-10-00001", FileNames.safe("FACT-2026-10-00001"));
+    }
+
+    private List<String> numbers(Long userId) {
+        return invoiceService.getInvoicePage(userId, null, null, 50).invoices.stream().map(invoice -> invoice.invoiceNumber).sorted().toList();
+    }
+
+    private static String line(Long clientId, String invoiceNumber) {
+        String number = invoiceNumber != null ? "\"invoiceNumber\": \"" + invoiceNumber + "\", " : "";
+        return "{" + number + "\"clientId\": " + clientId + ", \"issueDate\": \"" + LocalDate.now()
+                + "\", \"dueDate\": \"" + LocalDate.now().plusDays(30) + "\", \"items\": [{\"description\": \"Audit\","
+                + " \"quantity\": 1, \"unitPrice\": 100.00, \"taxRate\": 20.00}]}";
+    }
+
+    private static ByteArrayInputStream input(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,92 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.dto.InvoiceDto;
+import com.facture.entity.Invoice;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.NotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+class InvoiceNumberAllocatorTest {
+
+    private static final int THREADS = 12;
+    private static final int INVOICES_PER_THREAD = 25;
+
+    @Inject
+    InvoiceService invoiceService;
+
+    @Inject
+    TestData testData;
+
+    @Test
+    void concurrentCreatesGetGapFreeNumbersInCreationOrder() throws Exception {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        String prefix = "FACT-" + YearMonth.now() + "-";
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<InvoiceDto>>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    List<InvoiceDto> created = new ArrayList<>();
+                    for (int i = 0; i < INVOICES_PER_THREAD; i++) {
+                        created.add(invoiceService.createInvoice(userId,
+                                TestData.invoiceRequest(clientId, LocalDate.now(), 1)));
+                    }
+                    return created;
+                }));
+            }
+            start.countDown();
+
+            List<InvoiceDto> created = new ArrayList<>();
+            for (Future<List<InvoiceDto>> result : results) {
+                created.addAll(result.get(2, TimeUnit.MINUTES));
+            }
+
+            // Ordered by id, i.e. by insert: the numbers must read 1, 2, 3... in the same order
+            created.sort(Comparator.comparing(invoice -> invoice.id));
+            assertEquals(THREADS * INVOICES_PER_THREAD, created.size());
+            for (int i = 0; i < created.size(); i++) {
+                assertEquals(String.format("%s%05d", prefix, i + 1), created.get(i).invoiceNumber);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void rolledBackCreateLeavesNoGap() {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        String prefix = "FACT-" + YearMonth.now() + "-";
+
+        invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, LocalDate.now(), 1));
+        // The number is taken before the client lookup fails
+        assertThrows(NotFoundException.class,
+                () -> invoiceService.createInvoice(userId, TestData.invoiceRequest(-1L, LocalDate.now(), 1)));
+        InvoiceDto next = invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, LocalDate.now(), 1));
+
+        assertEquals(prefix + "00002", next.invoiceNumber);
+        assertEquals(2, QuarkusTransaction.requiringNew().call(() -> Invoice.count("user.id", userId)));
+    }
+}
@@ -0,0 +1,119 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.dto.CreateInvoiceRequest;
+import com.facture.dto.InvoiceDto;
+import com.facture.dto.InvoicePageDto;
+import com.facture.util.InvoiceCursor;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class InvoiceServiceTest {
+
+    @Inject
+    InvoiceService invoiceService;
+
+    @Inject
+    TestData testData;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Test
+    void invoicePageCostsTheSameQueriesWhateverItsSize() {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        LocalDate issueDate = LocalDate.of(2026, 1, 1);
+        for (int i = 0; i < 60; i++) {
+            invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, issueDate.plusDays(i % 20), 3));
+        }
+
+        long small = statementsFor(() -> assertEquals(5, page(userId, null, 5).invoices.size()));
+        long large = statementsFor(() -> assertEquals(50, page(userId, null, 50).invoices.size()));
+
+        // Page ids, then invoices with their client and items
+        assertEquals(2, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void cursorWalksEveryInvoiceOnceInListOrder() {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        LocalDate issueDate = LocalDate.of(2026, 1, 1);
+        for (int i = 0; i < 23; i++) {
+            // Shared issue dates, so the id breaks the ties
+            invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, issueDate.plusDays(i % 4), 1));
+        }
+
+        Set<Long> seen = new HashSet<>();
+        InvoiceDto previous = null;
+        InvoiceCursor cursor = null;
+        do {
+            InvoicePageDto<InvoiceDto> page = page(userId, cursor, 5);
+            for (InvoiceDto invoice : page.invoices) {
+                assertTrue(seen.add(invoice.id));
+                if (previous != null) {
+                    int order = invoice.issueDate.compareTo(previous.issueDate);
+                    assertTrue(order < 0 || (order == 0 && invoice.id < previous.id));
+                }
+                previous = invoice;
+            }
+            cursor = page.nextCursor != null ? InvoiceCursor.decode(page.nextCursor) : null;
+            assertFalse(page.invoices.isEmpty() && cursor != null);
+        } while (cursor != null);
+
+        assertEquals(23, seen.size());
+    }
+
+    @Test
+    void editingOneLineOfALargeInvoiceUpdatesOnlyThatLine() {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        InvoiceDto invoice = invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, LocalDate.now(), 500));
+
+        CreateInvoiceRequest request = TestData.invoiceRequest(clientId, invoice.issueDate, 0);
+        request.items = invoice.items;
+        request.items.get(250).quantity = new BigDecimal("3");
+
+        Statistics statistics = statistics();
+        long statements = statementsFor(() -> invoiceService.updateInvoice(userId, invoice.id, request, null));
+
+        // The invoice (totals, change sequence), the edited line and the tenant version
+        assertEquals(3, statistics.getEntityUpdateCount());
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getEntityDeleteCount());
+        // Invoice, tenant version, client and lines read once each, then the three updates
+        assertEquals(7, statements);
+    }
+
+    private InvoicePageDto<InvoiceDto> page(Long userId, InvoiceCursor cursor, int limit) {
+        return QuarkusTransaction.requiringNew().call(() -> invoiceService.getInvoicePage(userId, null, cursor, limit));
+    }
+
+    private long statementsFor(Runnable action) {
+        Statistics statistics = statistics();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Statistics statistics() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+}
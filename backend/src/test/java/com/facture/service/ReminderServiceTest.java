@@ -0,0 +1,82 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.entity.Invoice;
+import com.facture.entity.InvoiceStatus;
+import com.facture.entity.Reminder;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusMock;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+class ReminderServiceTest {
+
+    @Inject
+    ReminderService reminderService;
+
+    @Inject
+    InvoiceService invoiceService;
+
+    @Inject
+    TestData testData;
+
+    @Test
+    void skippedStepsCollapseIntoTheLatestOneAndAreNotRepeated() {
+        Long userId = testData.user();
+        Long clientId = testData.client(userId);
+        // Past every default offset (1, 7, 15) at once
+        Long invoiceId = overdueInvoice(userId, clientId, 20);
+
+        reminderService.run();
+        assertEquals(List.of(2), steps(invoiceId));
+
+        reminderService.run();
+        assertEquals(List.of(2), steps(invoiceId));
+    }
+
+    @Test
+    void failingInvoiceIsSkippedWithoutEndingTheRun() {
+        Long userId = testData.user();
+        Long failingClientId = testData.client(userId);
+        Long clientId = testData.client(userId);
+        Long failingInvoiceId = overdueInvoice(userId, failingClientId, 3);
+        Long invoiceId = overdueInvoice(userId, clientId, 3);
+        String failingClientName = QuarkusTransaction.requiringNew()
+                .call(() -> Invoice.<Invoice>findById(failingInvoiceId).client.companyName);
+
+        QuarkusMock.installMockForType(new EmailService() {
+            @Override
+            public void sendReminderEmail(Long userId, String to, String clientName, String invoiceNumber, int daysOverdue,
+                                          Long reminderId) {
+                if (clientName.equals(failingClientName)) {
+                    throw new IllegalStateException("Outbox insert failed");
+                }
+            }
+        }, EmailService.class);
+
+        reminderService.run();
+
+        assertEquals(List.of(), steps(failingInvoiceId));
+        assertEquals(List.of(0), steps(invoiceId));
+    }
+
+    private Long overdueInvoice(Long userId, Long clientId, int daysOverdue) {
+        LocalDate dueDate = LocalDate.now().minusDays(daysOverdue);
+        Long invoiceId = invoiceService.createInvoice(userId, TestData.invoiceRequest(clientId, dueDate.minusDays(30), 1)).id;
+        QuarkusTransaction.requiringNew().run(() ->
+                Invoice.update("status = ?1, dueDate = ?2 where id = ?3", InvoiceStatus.OVERDUE, dueDate, invoiceId));
+        return invoiceId;
+    }
+
+    private static List<Integer> steps(Long invoiceId) {
+        return QuarkusTransaction.requiringNew().call(() -> Reminder.<Reminder>list("invoice.id = ?1 and type = ?2 order by step",
+                invoiceId, Reminder.ReminderType.AUTO).stream().map(reminder -> reminder.step).toList());
+    }
+}
@@ -0,0 +1,107 @@
+package com.facture.service;
+
+import com.facture.TestData;
+import com.facture.dto.SyncDto;
+import com.facture.entity.SyncTombstone;
+import com.facture.util.SyncToken;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Pages hold 20 changes in the test profile
+@QuarkusTest
+class SyncServiceTest {
+
+    @Inject
+    SyncService syncService;
+
+    @Inject
+    ClientService clientService;
+
+    @Inject
+    TestData testData;
+
+    @Test
+    void snapshotBelowAPurgedHorizonPagesToTheEnd() {
+        Long userId = testData.user();
+        List<Long> clients = clients(userId, 50);
+        clientService.deleteClient(userId, clients.remove(clients.size() - 1));
+        purgeTombstones();
+
+        SyncDto page = sync(userId, null);
+        assertTrue(page.reset);
+        Set<Long> received = new HashSet<>(ids(page));
+        int pages = 1;
+        while (page.hasMore) {
+            page = sync(userId, page.token);
+            assertFalse(page.reset);
+            received.addAll(ids(page));
+            assertTrue(++pages <= 3, "the snapshot does not progress");
+        }
+
+        assertEquals(new HashSet<>(clients), received);
+        // A plain delta token once the snapshot is complete
+        assertFalse(SyncToken.decode(page.token).isSnapshot());
+        assertTrue(sync(userId, page.token).clients.isEmpty());
+    }
+
+    @Test
+    void deleteDuringASnapshotIsSentAsATombstone() {
+        Long userId = testData.user();
+        clients(userId, 30);
+
+        SyncDto first = sync(userId, null);
+        Long deleted = first.clients.get(0).id;
+        clientService.deleteClient(userId, deleted);
+
+        SyncDto rest = sync(userId, first.token);
+        assertFalse(rest.reset);
+        assertFalse(rest.hasMore);
+        assertEquals(List.of(deleted), rest.deletedClientIds);
+    }
+
+    @Test
+    void purgeDuringASnapshotRestartsIt() {
+        Long userId = testData.user();
+        List<Long> clients = clients(userId, 30);
+
+        SyncDto first = sync(userId, null);
+        clientService.deleteClient(userId, clients.get(clients.size() - 1));
+        purgeTombstones();
+
+        SyncDto next = sync(userId, first.token);
+        assertTrue(next.reset);
+    }
+
+    // Each call is a request of its own, with a fresh persistence context
+    private SyncDto sync(Long userId, String token) {
+        return QuarkusTransaction.requiringNew().call(() -> syncService.changesSince(userId, SyncToken.decode(token)));
+    }
+
+    private List<Long> clients(Long userId, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(testData.client(userId));
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(SyncDto page) {
+        return page.clients.stream().map(client -> client.id).toList();
+    }
+
+    private static void purgeTombstones() {
+        QuarkusTransaction.requiringNew().run(() -> SyncTombstone.purgeDeletedBefore(LocalDateTime.now().plusMinutes(1)));
+    }
+}
@@ -1,11 +1,17 @@
 import api from './api'
-import type { Invoice, CreateInvoiceRequest, InvoiceStatus } from '@/types'
+import type { Invoice, InvoicePage, CreateInvoiceRequest, InvoiceStatus } from '@/types'
 
 export const invoiceService = {
-  async getInvoices(status?: InvoiceStatus): Promise<Invoice[]> {
-    const params = status ? { status } : {}
+  // One page, newest first; nextCursor is null on the last page
+  async getInvoices(status?: InvoiceStatus, cursor?: string | null): Promise<InvoicePage> {
+    const params: Record<string, string> = {}
+    if (status) params.status = status
+    if (cursor) params.cursor = cursor
     const response = await api.get('/invoices', { params })
-    return response.data
+    return {
+      invoices: response.data,
+      nextCursor: response.headers['x-next-cursor'] ?? null
+    }
   },
 
   async getInvoice(id: number): Promise<Invoice> {
@@ -5,6 +5,8 @@ import { invoiceService } from '@/services/invoice.service'
 
 export const useInvoiceStore = defineStore('invoices', () => {
   const invoices = ref<Invoice[]>([])
+  const nextCursor = ref<string | null>(null)
+  const listStatus = ref<InvoiceStatus | undefined>(undefined)
   const currentInvoice = ref<Invoice | null>(null)
   const loading = ref(false)
   const error = ref<string | null>(null)
@@ -13,7 +15,27 @@ export const useInvoiceStore = defineStore('invoices', () => {
     loading.value = true
     error.value = null
     try {
-      invoices.value = await invoiceService.getInvoices(status)
+      const page = await invoiceService.getInvoices(status)
+      invoices.value = page.invoices
+      nextCursor.value = page.nextCursor
+      listStatus.value = status
+    } catch (e: any) {
+      error.value = e.response?.data?.message || 'Failed to fetch invoices'
+      throw e
+    } finally {
+      loading.value = false
+    }
+  }
+
+  // Appends the next page of the list loaded by fetchInvoices
+  const fetchMoreInvoices = async () => {
+    if (!nextCursor.value) return
+    loading.value = true
+    error.value = null
+    try {
+      const page = await invoiceService.getInvoices(listStatus.value, nextCursor.value)
+      invoices.value.push(...page.invoices)
+      nextCursor.value = page.nextCursor
     } catch (e: any) {
       error.value = e.response?.data?.message || 'Failed to fetch invoices'
       throw e
@@ -102,10 +124,12 @@ export const useInvoiceStore = defineStore('invoices', () => {
 
   return {
     invoices,
+    nextCursor,
     currentInvoice,
     loading,
     error,
     fetchInvoices,
+    fetchMoreInvoices,
     fetchInvoice,
     createInvoice,
     updateInvoice,
@@ -63,6 +63,11 @@ export interface Invoice {
   updatedAt: string
 }
 
+export interface InvoicePage {
+  invoices: Invoice[]
+  nextCursor: string | null
+}
+
 export interface AuthResponse {
   accessToken: string
   refreshToken: string